@@ -0,0 +1,45 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis.StemCache;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis.TextPreprocessor;
+
+@Configuration
+@Slf4j
+public class AnalysisConfig {
+
+    static final String STEM_CACHE_NAME = "stems";
+
+    /**
+     * Text analysis shared by indexing threads; search.analysis.stem-cache.size = 0 disables the stem cache.
+     * Cache hits / misses are published as "cache.gets" with cache=stems.
+     */
+    @Bean
+    public TextPreprocessor textPreprocessor(@Value("${search.analysis.stem-cache.size:65536}") int stemCacheSize,
+                                             MeterRegistry registry) {
+        if (stemCacheSize <= 0) {
+            log.info("Stem cache disabled");
+            return new TextPreprocessor();
+        }
+
+        StemCache stemCache = new StemCache(stemCacheSize);
+        FunctionCounter.builder("cache.gets", stemCache, StemCache::hitCount)
+                .tag("cache", STEM_CACHE_NAME).tag("result", "hit")
+                .description("Stem cache lookups").register(registry);
+        FunctionCounter.builder("cache.gets", stemCache, StemCache::missCount)
+                .tag("cache", STEM_CACHE_NAME).tag("result", "miss")
+                .description("Stem cache lookups").register(registry);
+        Gauge.builder("cache.size", stemCache, StemCache::size).tag("cache", STEM_CACHE_NAME)
+                .description("Number of cached stems").register(registry);
+        Gauge.builder("cache.hit.ratio", stemCache, StemCache::hitRate).tag("cache", STEM_CACHE_NAME)
+                .description("Share of stem lookups answered from the cache").register(registry);
+        log.info("Stem cache: {}", stemCache);
+        return new TextPreprocessor(stemCache);
+    }
+}
@@ -0,0 +1,43 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.BM25Similarity;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.FieldBoosts;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.Similarity;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.TfIdfSimilarity;
+
+@Configuration
+@Slf4j
+public class SimilarityConfig {
+
+    /**
+     * Ranking function used by search: "bm25" (default) or "tfidf".
+     */
+    @Bean
+    public Similarity similarity(@Value("${search.similarity:bm25}") String name,
+                                 @Value("${search.bm25.k1:" + BM25Similarity.DEFAULT_K1 + "}") double k1,
+                                 @Value("${search.bm25.b:" + BM25Similarity.DEFAULT_B + "}") double b) {
+        Similarity similarity = switch (name.trim().toLowerCase()) {
+            case "bm25" -> new BM25Similarity(k1, b);
+            case "tfidf", "tf-idf" -> new TfIdfSimilarity();
+            default -> throw new IllegalArgumentException("Unknown search.similarity: " + name);
+        };
+        log.info("Search similarity: {}", similarity);
+        return similarity;
+    }
+
+    /**
+     * Query-time weights of the title, content and URL fields (0 = field not searched).
+     */
+    @Bean
+    public FieldBoosts fieldBoosts(@Value("${search.boost.title:2.0}") double title,
+                                   @Value("${search.boost.content:1.0}") double content,
+                                   @Value("${search.boost.url:0.5}") double url) {
+        FieldBoosts boosts = new FieldBoosts(title, content, url);
+        log.info("Search field boosts: {}", boosts);
+        return boosts;
+    }
+}
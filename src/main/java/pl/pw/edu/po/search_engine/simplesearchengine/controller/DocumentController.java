@@ -1,15 +1,22 @@
 package pl.pw.edu.po.search_engine.simplesearchengine.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import pl.pw.edu.po.search_engine.simplesearchengine.dto.BulkImportResult;
 import pl.pw.edu.po.search_engine.simplesearchengine.dto.DocumentRequest;
 import pl.pw.edu.po.search_engine.simplesearchengine.dto.DocumentResponse;
 import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
 import pl.pw.edu.po.search_engine.simplesearchengine.service.DocumentService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -20,12 +27,39 @@ import java.util.stream.Collectors;
 public class DocumentController {
 
     private final DocumentService documentService;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * @param waitForIndexing respond only once the document is searchable (default: indexed in the background);
+     *                        202 Accepted when it did not become searchable within the wait timeout
+     */
     @PostMapping
-    public ResponseEntity<DocumentResponse> addDocument(@RequestBody DocumentRequest request) {
+    public ResponseEntity<DocumentResponse> addDocument(@RequestBody DocumentRequest request,
+                                                        @RequestParam(defaultValue = "false") boolean waitForIndexing) {
         log.info("POST /api/documents - Adding document: {}", request.getTitle());
         Document document = documentService.addDocument(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(toResponse(document));
+        return ResponseEntity.status(statusAfterIndexing(waitForIndexing, HttpStatus.CREATED)).body(toResponse(document));
+    }
+
+    /**
+     * Bulk import: a JSON array of documents or NDJSON (one document per line), parsed as a stream.
+     * Documents with an already stored URL are skipped, see DocumentService.importDocuments().
+     * With waitForIndexing, 202 Accepted means the imported documents were stored but are not searchable yet.
+     */
+    @PostMapping(path = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkImportResult> importDocuments(InputStream body,
+                                                            @RequestParam(defaultValue = "false") boolean waitForIndexing)
+            throws IOException {
+        log.info("POST /api/documents/bulk - Importing documents");
+        BulkImportResult result;
+        try (MappingIterator<DocumentRequest> documents = objectMapper.readerFor(DocumentRequest.class).readValues(body)) {
+            result = documentService.importDocuments(documents);
+        } catch (RuntimeException e) {
+            // MappingIterator wraps parse errors of the documents after the first one
+            if (e.getCause() instanceof JsonProcessingException parseError) throw parseError;
+            throw e;
+        }
+        return ResponseEntity.status(statusAfterIndexing(waitForIndexing, HttpStatus.OK)).body(result);
     }
 
     @GetMapping
@@ -52,13 +86,17 @@ public class DocumentController {
         return ResponseEntity.ok(toResponse(document));
     }
 
+    /**
+     * @param waitForIndexing respond only once the change is searchable, 202 Accepted on timeout
+     */
     @PutMapping("/{id}")
     public ResponseEntity<DocumentResponse> updateDocument(
             @PathVariable Long id,
-            @RequestBody DocumentRequest request) {
+            @RequestBody DocumentRequest request,
+            @RequestParam(defaultValue = "false") boolean waitForIndexing) {
         log.info("PUT /api/documents/{} - Updating document", id);
         Document document = documentService.updateDocument(id, request);
-        return ResponseEntity.ok(toResponse(document));
+        return ResponseEntity.status(statusAfterIndexing(waitForIndexing, HttpStatus.OK)).body(toResponse(document));
     }
 
     @DeleteMapping("/{id}")
@@ -82,6 +120,17 @@ public class DocumentController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Status of a write: the given one, or 202 Accepted when the caller asked to wait for indexing
+     * and the change did not become searchable in time (it is stored and still gets indexed).
+     */
+    private HttpStatus statusAfterIndexing(boolean waitForIndexing, HttpStatus indexed) {
+        if (!waitForIndexing || documentService.waitUntilSearchable()) {
+            return indexed;
+        }
+        return HttpStatus.ACCEPTED;
+    }
+
     private DocumentResponse toResponse(Document document) {
         return DocumentResponse.builder()
                 .id(document.getId())
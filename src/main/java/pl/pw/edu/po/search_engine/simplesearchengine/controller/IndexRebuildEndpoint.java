@@ -0,0 +1,24 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import pl.pw.edu.po.search_engine.simplesearchengine.service.IndexInitializationService;
+import pl.pw.edu.po.search_engine.simplesearchengine.service.IndexRebuildProgress;
+
+/**
+ * Actuator endpoint /actuator/indexrebuild: state and throughput of the startup index rebuild.
+ */
+@Component
+@Endpoint(id = "indexrebuild")
+@RequiredArgsConstructor
+public class IndexRebuildEndpoint {
+
+    private final IndexInitializationService indexInitializationService;
+
+    @ReadOperation
+    public IndexRebuildProgress.Status progress() {
+        return indexInitializationService.getRebuildProgress().status();
+    }
+}
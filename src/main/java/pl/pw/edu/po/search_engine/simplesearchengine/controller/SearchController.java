@@ -17,21 +17,25 @@ public class SearchController {
     private final SearchService searchService;
 
     /**
-     * GET /api/search?query=...&limit=10&offset=0
+     * GET /api/search?query=...&limit=10&offset=0&operator=AND
      * Searches documents with pagination and returns ranked results with snippets.
+     * The query supports AND, OR, NOT and parentheses, e.g. "java AND (spring OR jakarta) NOT legacy";
+     * operator joins words written without an explicit operator.
      */
     @GetMapping("/search")
     public ResponseEntity<SearchResponse> search(
             @RequestParam(required = true) String query,
             @RequestParam(defaultValue = "10") Integer limit,
-            @RequestParam(defaultValue = "0") Integer offset) {
+            @RequestParam(defaultValue = "0") Integer offset,
+            @RequestParam(defaultValue = "AND") SearchRequest.Operator operator) {
 
-        log.info("GET /api/search - query: '{}', limit: {}, offset: {}", query, limit, offset);
+        log.info("GET /api/search - query: '{}', limit: {}, offset: {}, operator: {}", query, limit, offset, operator);
 
         SearchRequest request = SearchRequest.builder()
                 .query(query)
                 .limit(limit)
                 .offset(offset)
+                .operator(operator)
                 .build();
 
         SearchResponse response = searchService.search(request);
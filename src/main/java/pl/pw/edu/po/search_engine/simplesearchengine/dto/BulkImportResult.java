@@ -0,0 +1,19 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportResult {
+
+    private Integer documentsReceived;
+    private Integer documentsCreated;
+    private Integer duplicatesSkipped;  // URL already stored or repeated in the import
+    private Integer invalidSkipped;     // missing URL or content
+    private Long importTimeMs;
+}
@@ -17,5 +17,16 @@ public class SearchRequest {
 
     @Builder.Default
     private Integer offset = 0;
+
+    /**
+     * Operator joining query words written without an explicit AND / OR:
+     * AND - documents must contain all of them, OR - any of them (ranked with dynamic pruning).
+     */
+    @Builder.Default
+    private Operator operator = Operator.AND;
+
+    public enum Operator {
+        AND, OR
+    }
 }
 
@@ -14,6 +14,9 @@ import java.util.List;
 public class SearchResponse {
     private String query;
     private Long totalResults;
+    // false when pruned OR queries skipped documents - totalResults is then a lower bound
+    @Builder.Default
+    private Boolean totalResultsExact = true;
     private Integer limit;
     private Integer offset;
     private List<SearchResult> results;
@@ -0,0 +1,102 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded surface form -> stem cache in front of the stemmer, safe to share between threads.
+ * Word frequencies are Zipfian, so a few thousand entries answer most lookups during bulk indexing.
+ * - direct-mapped table: every word has exactly one slot, a new word simply replaces the old one
+ *   (no LRU bookkeeping, frequent words win the slot back on their next occurrence)
+ * - entries are immutable and published through an atomic array, lookups never lock
+ * - lookups take the word as chars, a hit allocates nothing
+ */
+public final class StemCache {
+
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries upper bound of cached words, rounded down to a power of two
+     */
+    public StemCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Stem cache needs at least one entry: " + maxEntries);
+        }
+        int capacity = Integer.highestOneBit(maxEntries);
+        this.table = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Cached stem of the word, or null.
+     *
+     * @param hash String.hashCode() of the word
+     * @return the stem, exactly as long as the array; must not be modified
+     */
+    public char[] get(char[] word, int length, int hash) {
+        Entry entry = table.get(slot(hash));
+        if (entry != null && entry.hash == hash && Arrays.equals(entry.word, 0, entry.word.length, word, 0, length)) {
+            hits.increment();
+            return entry.stem;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Remembers the stem of the word, replacing whatever occupied its slot. Copies both arrays.
+     */
+    public void put(char[] word, int length, int hash, char[] stem, int stemLength) {
+        Entry previous = table.getAndSet(slot(hash),
+                new Entry(hash, Arrays.copyOf(word, length), Arrays.copyOf(stem, stemLength)));
+        if (previous == null) {
+            size.incrementAndGet();
+        }
+    }
+
+    /**
+     * Number of cached words.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int capacity() {
+        return table.length();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Share of lookups answered from the cache, 0 before the first lookup.
+     */
+    public double hitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    private int slot(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private record Entry(int hash, char[] word, char[] stem) {
+    }
+
+    @Override
+    public String toString() {
+        return "StemCache{capacity=" + capacity() + ", size=" + size() + ", hitRate=" + hitRate() + "}";
+    }
+}
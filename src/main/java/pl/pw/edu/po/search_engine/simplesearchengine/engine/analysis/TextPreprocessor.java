@@ -3,8 +3,6 @@ package pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis;
 import org.tartarus.snowball.ext.EnglishStemmer;
 
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class TextPreprocessor {
 
@@ -16,37 +14,174 @@ public class TextPreprocessor {
             "there", "these", "they", "this", "to", "was", "will", "with"
     );
 
-    private static final Pattern TOKEN_PATTERN = Pattern.compile("[^a-zA-Z0-9]+");
-    private final ThreadLocal<EnglishStemmer> stemmer = ThreadLocal.withInitial(EnglishStemmer::new);
+    // Stop words as chars in an open-addressing table (power of two, at most half full), see isStopWord()
+    private static final char[][] STOP_WORD_TABLE = stopWordTable();
+    private static final int MAX_STOP_WORD_LENGTH = STOP_WORDS.stream().mapToInt(String::length).max().orElse(0);
+
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+    // shared by all threads using this preprocessor, null = stem every token
+    private final StemCache stemCache;
+
+    public TextPreprocessor() {
+        this(null);
+    }
+
+    /**
+     * @param stemCache cache of stems shared by all threads, null to run the stemmer for every token
+     */
+    public TextPreprocessor(StemCache stemCache) {
+        this.stemCache = stemCache;
+    }
+
+    /**
+     * Analyzed token with the character range [start, end) it came from in the original text.
+     */
+    public record Token(String term, int start, int end) {
+    }
+
+    /**
+     * Receives the tokens of tokenize() one by one.
+     */
+    @FunctionalInterface
+    public interface TokenSink {
+        /**
+         * @param term buffer holding the analyzed term in [0, length); it is reused for the next token,
+         *             so copy whatever has to be kept
+         * @param start first character of the token in the original text
+         * @param end character after the last one
+         */
+        void accept(char[] term, int length, int start, int end);
+    }
 
     public List<String> process(String text) {
-        if (text == null || text.isBlank()) return List.of();
+        List<String> terms = new ArrayList<>();
+        tokenize(text, (term, length, start, end) -> terms.add(new String(term, 0, length)));
+        return terms;
+    }
+
+    /**
+     * Same analysis as process(), keeping character offsets of every token for highlighting.
+     */
+    public List<Token> analyze(String text) {
+        List<Token> tokens = new ArrayList<>();
+        tokenize(text, (term, length, start, end) -> tokens.add(new Token(new String(term, 0, length), start, end)));
+        return tokens;
+    }
+
+    /**
+     * Single pass analysis handing every token to the sink without allocating per token:
+     * - tokens are runs of ASCII letters and digits, everything else separates them
+     * - lowercased while copying into a per-thread buffer, stop words are recognized on the chars
+     * - the stemmer works on that buffer directly, unless the stem cache knows the word already
+     */
+    public void tokenize(CharSequence text, TokenSink sink) {
+        if (text == null) return;
+
+        State current = state.get();
+        char[] buffer = current.buffer;
+        int length = text.length();
+        int start = -1;
+        int hash = 0;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (isTokenChar(c)) {
+                if (start < 0) {
+                    start = i;
+                    hash = 0;
+                }
+                int size = i - start;
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    current.buffer = buffer;
+                }
+                // Lowercasing ASCII keeps the length, so offsets refer to the original text
+                char lower = c <= 'Z' && c >= 'A' ? (char) (c + ('a' - 'A')) : c;
+                buffer[size] = lower;
+                hash = 31 * hash + lower;
+            } else if (start >= 0) {
+                int size = i - start;
+                if (!isStopWord(buffer, size, hash)) {
+                    emit(current, buffer, size, hash, start, i, sink);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private void emit(State current, char[] buffer, int size, int hash, int start, int end, TokenSink sink) {
+        if (stemCache != null) {
+            char[] cached = stemCache.get(buffer, size, hash);
+            if (cached != null) {
+                sink.accept(cached, cached.length, start, end);
+                return;
+            }
+        }
+
+        // The stemmer works in place, remember the surface form first when it has to be cached
+        char[] word = buffer;
+        if (stemCache != null) {
+            word = current.word(size);
+            System.arraycopy(buffer, 0, word, 0, size);
+        }
+        EnglishStemmer stemmer = current.stemmer;
+        stemmer.setCurrent(buffer, size);
+        char[] stem = buffer;
+        int stemLength = size;
+        if (stemmer.stem()) {
+            stem = stemmer.getCurrentBuffer();
+            stemLength = stemmer.getCurrentBufferLength();
+        }
+        if (stemCache != null) {
+            stemCache.put(word, size, hash, stem, stemLength);
+        }
+        sink.accept(stem, stemLength, start, end);
+    }
 
-        // Lowercase
-        String lower = text.toLowerCase(Locale.ROOT);
+    private static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
 
-        // Tokenizing
-        List<String> tokens = Arrays.stream(TOKEN_PATTERN.split(lower))
-                .filter(token -> !token.isBlank())
-                .toList();
+    /**
+     * @param hash String.hashCode() of the chars, computed while copying them
+     */
+    private static boolean isStopWord(char[] chars, int length, int hash) {
+        if (length > MAX_STOP_WORD_LENGTH) return false;
 
-        // Removing stop words
-        List<String> filtered = tokens.stream()
-                .filter(token -> !STOP_WORDS.contains(token))
-                .toList();
+        int mask = STOP_WORD_TABLE.length - 1;
+        for (int slot = hash & mask; STOP_WORD_TABLE[slot] != null; slot = (slot + 1) & mask) {
+            if (Arrays.equals(STOP_WORD_TABLE[slot], 0, STOP_WORD_TABLE[slot].length, chars, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        // Stemming
-        return filtered.stream()
-                .map(this::stem)
-                .collect(Collectors.toList());
+    private static char[][] stopWordTable() {
+        char[][] table = new char[Integer.highestOneBit(STOP_WORDS.size()) << 2][];
+        int mask = table.length - 1;
+        for (String word : STOP_WORDS) {
+            int slot = word.hashCode() & mask;
+            while (table[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = word.toCharArray();
+        }
+        return table;
     }
 
-    private String stem(String word) {
-        EnglishStemmer stemmerInstance = stemmer.get();
-        stemmerInstance.setCurrent(word);
-        if (stemmerInstance.stem()) {
-            return stemmerInstance.getCurrent();
+    /**
+     * Per-thread stemmer (not thread-safe), term buffer and copy of the surface form for the stem cache.
+     */
+    private static final class State {
+        final EnglishStemmer stemmer = new EnglishStemmer();
+        char[] buffer = new char[32];
+        private char[] word = new char[32];
+
+        char[] word(int length) {
+            if (word.length < length) {
+                word = new char[Math.max(length, 2 * word.length)];
+            }
+            return word;
         }
-        return word;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Atomically published reference to the index that serves searches and receives writes.
+ * - a full rebuild happens on a separate InvertedIndex and goes live with swap(): one pointer flip,
+ *   searches never see an empty or half-built index
+ * - readers acquire() a Searcher (reference counted) for the duration of a request and keep working
+ *   on the index and snapshot they started with, even when a swap happens meanwhile
+ * - a replaced index is closed once the last searcher using it is released
+ */
+public final class ActiveIndex {
+
+    private final AtomicReference<Reference> current;
+
+    public ActiveIndex(InvertedIndex index) {
+        this.current = new AtomicReference<>(new Reference(index));
+    }
+
+    /**
+     * Index for writers. Writes reaching an index that was just swapped out are lost with it.
+     */
+    public InvertedIndex current() {
+        return current.get().index;
+    }
+
+    /**
+     * Pins the current index and its snapshot until the searcher is closed.
+     */
+    public Searcher acquire() {
+        while (true) {
+            Reference reference = current.get();
+            // Fails only for an index already swapped out and released, the loop then sees the new one
+            if (reference.tryIncRef()) {
+                return new Searcher(reference);
+            }
+        }
+    }
+
+    /**
+     * Publishes the replacement; the previous index is closed when its last searcher is released.
+     *
+     * @return the replaced index
+     */
+    public InvertedIndex swap(InvertedIndex replacement) {
+        Reference previous = current.getAndSet(new Reference(replacement));
+        previous.decRef();
+        return previous.index;
+    }
+
+    /**
+     * Number of searchers holding the current index (tests and diagnostics).
+     */
+    public int activeSearchers() {
+        // one reference belongs to the publication itself
+        return Math.max(0, current.get().refs.get() - 1);
+    }
+
+    /**
+     * Leased view of one index, close it when the request is done (try-with-resources).
+     */
+    public static final class Searcher implements AutoCloseable {
+        private final Reference reference;
+        private final IndexSnapshot snapshot;
+        private boolean closed;
+
+        private Searcher(Reference reference) {
+            this.reference = reference;
+            this.snapshot = reference.index.snapshot();
+        }
+
+        public InvertedIndex index() {
+            return reference.index;
+        }
+
+        /**
+         * Snapshot taken when the searcher was acquired.
+         */
+        public IndexSnapshot snapshot() {
+            return snapshot;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            reference.decRef();
+        }
+    }
+
+    /**
+     * Published index and its reference count: 1 for being current plus 1 per open searcher.
+     */
+    private static final class Reference {
+        final InvertedIndex index;
+        final AtomicInteger refs = new AtomicInteger(1);
+
+        Reference(InvertedIndex index) {
+            this.index = index;
+        }
+
+        boolean tryIncRef() {
+            int count;
+            do {
+                count = refs.get();
+                if (count == 0) return false;
+            } while (!refs.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void decRef() {
+            if (refs.decrementAndGet() == 0) {
+                index.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+/**
+ * Score bounds of one term's postings inside a segment, for dynamic pruning (WAND / Block-Max WAND).
+ * Postings are split into blocks of BLOCK_SIZE documents; per block the largest term frequency and
+ * the shortest document length are kept, plus the same two values for the whole list.
+ * For any similarity that grows with frequency and shrinks with document length,
+ * score(maxFreq, minDocLength) bounds the score of every document in the block.
+ * Deleted documents still count - the bounds stay valid, just a little looser.
+ */
+public final class BlockMaxima {
+
+    public static final int BLOCK_SIZE = 128;
+
+    static final BlockMaxima EMPTY = new BlockMaxima(new int[0], new int[0], new int[0], 0, Integer.MAX_VALUE);
+
+    // block -> last ordinal in the block, largest freq, shortest document length
+    private final int[] lastDocs;
+    private final int[] maxFreqs;
+    private final int[] minDocLengths;
+    private final int maxFreq;
+    private final int minDocLength;
+
+    private BlockMaxima(int[] lastDocs, int[] maxFreqs, int[] minDocLengths, int maxFreq, int minDocLength) {
+        this.lastDocs = lastDocs;
+        this.maxFreqs = maxFreqs;
+        this.minDocLengths = minDocLengths;
+        this.maxFreq = maxFreq;
+        this.minDocLength = minDocLength;
+    }
+
+    /**
+     * Computes the bounds in one pass over the postings.
+     *
+     * @param docLengths ordinal -> document length of the segment the postings belong to
+     */
+    static BlockMaxima of(PostingsList postings, int[] docLengths) {
+        int size = postings.size();
+        if (size == 0) return EMPTY;
+
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] lastDocs = new int[blocks];
+        int[] maxFreqs = new int[blocks];
+        int[] minDocLengths = new int[blocks];
+        int maxFreq = 0;
+        int minDocLength = Integer.MAX_VALUE;
+
+        for (int block = 0; block < blocks; block++) {
+            int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+            int blockMaxFreq = 0;
+            int blockMinDocLength = Integer.MAX_VALUE;
+            for (int i = block * BLOCK_SIZE; i < end; i++) {
+                blockMaxFreq = Math.max(blockMaxFreq, postings.freq(i));
+                blockMinDocLength = Math.min(blockMinDocLength, docLengths[postings.docId(i)]);
+            }
+            lastDocs[block] = postings.docId(end - 1);
+            maxFreqs[block] = blockMaxFreq;
+            minDocLengths[block] = blockMinDocLength;
+            maxFreq = Math.max(maxFreq, blockMaxFreq);
+            minDocLength = Math.min(minDocLength, blockMinDocLength);
+        }
+        return new BlockMaxima(lastDocs, maxFreqs, minDocLengths, maxFreq, minDocLength);
+    }
+
+    /**
+     * Largest term frequency in the whole list (0 for an empty list).
+     */
+    public int maxFreq() {
+        return maxFreq;
+    }
+
+    /**
+     * Shortest document containing the term (Integer.MAX_VALUE for an empty list).
+     */
+    public int minDocLength() {
+        return minDocLength;
+    }
+
+    public int blockCount() {
+        return lastDocs.length;
+    }
+
+    /**
+     * First block, starting at fromBlock, that may contain the ordinal.
+     *
+     * @return block index or blockCount() when the ordinal is past the last posting
+     */
+    public int block(int ord, int fromBlock) {
+        int block = fromBlock;
+        while (block < lastDocs.length && lastDocs[block] < ord) {
+            block++;
+        }
+        return block;
+    }
+
+    /**
+     * Last ordinal covered by the block.
+     */
+    public int lastDoc(int block) {
+        return lastDocs[block];
+    }
+
+    public int maxFreq(int block) {
+        return maxFreqs[block];
+    }
+
+    public int minDocLength(int block) {
+        return minDocLengths[block];
+    }
+}
@@ -0,0 +1,13 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+/**
+ * Searchable fields of a document.
+ * Every field has its own postings and token counts (norms) inside a segment; all fields share the
+ * term dictionary, so a term has the same ID in each of them. Positions are counted per field.
+ * The order is part of the segment file format.
+ */
+public enum Field {
+    TITLE, CONTENT, URL;
+
+    static final int COUNT = values().length;
+}
@@ -0,0 +1,126 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import java.util.List;
+
+/**
+ * Point-in-time, immutable view of the index: the published segments and the term dictionary.
+ * Readers take one snapshot per query and never lock; writers publish a new snapshot instead
+ * of changing an existing one. This holds for deletes too: they replace the segment by a new
+ * version with its own tombstones, so live documents, documentCount and the statistics of a
+ * snapshot stay as they were when it was published.
+ */
+public final class IndexSnapshot {
+
+    private final TermDictionary terms;
+    private final List<Segment> segments;
+    private final int documentCount;
+    private final int maxDoc;
+    // field -> average number of tokens per document
+    private final double[] averageDocLengths;
+
+    IndexSnapshot(TermDictionary terms, List<Segment> segments) {
+        this.terms = terms;
+        this.segments = List.copyOf(segments);
+        int count = 0;
+        long maxDocs = 0;
+        long[] totalLengths = new long[Field.COUNT];
+        for (Segment segment : this.segments) {
+            count += segment.maxDoc() - segment.deletedCount();
+            maxDocs += segment.maxDoc();
+            for (Field field : Field.values()) {
+                totalLengths[field.ordinal()] += segment.totalDocLength(field);
+            }
+        }
+        this.documentCount = count;
+        this.maxDoc = (int) maxDocs;
+        // Like docFreq, includes deleted documents until they are merged away
+        this.averageDocLengths = new double[Field.COUNT];
+        for (int field = 0; field < Field.COUNT; field++) {
+            averageDocLengths[field] = maxDocs == 0 ? 0 : (double) totalLengths[field] / maxDocs;
+        }
+    }
+
+    /**
+     * Published segments, oldest first.
+     */
+    public List<Segment> segments() {
+        return segments;
+    }
+
+    /**
+     * Number of searchable (live) documents when the snapshot was published.
+     */
+    public int documentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Number of documents including deleted ones not merged away yet - the population docFreq counts,
+     * so collection statistics (N in IDF) must use this rather than documentCount.
+     */
+    public int maxDoc() {
+        return maxDoc;
+    }
+
+    /**
+     * Average number of content tokens per document (length normalization, e.g. BM25).
+     */
+    public double averageDocLength() {
+        return averageDocLength(Field.CONTENT);
+    }
+
+    /**
+     * Average number of tokens of the field per document.
+     */
+    public double averageDocLength(Field field) {
+        return averageDocLengths[field.ordinal()];
+    }
+
+    /**
+     * Term ID or TermDictionary.NOT_FOUND.
+     */
+    public int termId(String term) {
+        return terms.lookup(term);
+    }
+
+    public String term(int termId) {
+        return terms.term(termId);
+    }
+
+    /**
+     * Number of documents containing the term in their content, summed over all segments.
+     * Deleted documents are counted until they are merged away.
+     */
+    public int docFreq(int termId) {
+        return docFreq(Field.CONTENT, termId);
+    }
+
+    /**
+     * Number of documents containing the term in the field.
+     */
+    public int docFreq(Field field, int termId) {
+        int docFreq = 0;
+        for (Segment segment : segments) {
+            docFreq += segment.postings(field, termId).size();
+        }
+        return docFreq;
+    }
+
+    /**
+     * Segment holding the live document, or null if the document is not searchable.
+     */
+    public Segment segmentOf(int docId) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            int ord = segment.ordOf(docId);
+            if (ord >= 0 && !segment.isDeleted(ord)) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    TermDictionary terms() {
+        return terms;
+    }
+}
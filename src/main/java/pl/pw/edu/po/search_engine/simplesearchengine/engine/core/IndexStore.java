@@ -0,0 +1,238 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Persists index snapshots to a local directory and opens them again with memory-mapped segments.
+ *
+ * A commit consists of
+ * - one file per segment (see {@link SegmentFile}), reused by later commits while the segment is alive
+ * - terms_N.dict with the term dictionary (term IDs follow the file order)
+ * - commit_N manifest naming the files above plus free-form user data, written last and renamed atomically
+ * Every file is fsynced before the manifest is renamed, and the directory after it, so a crash never
+ * leaves a visible manifest pointing at data that did not reach the disk.
+ * Files not referenced by the newest manifest are deleted after a successful commit.
+ */
+@Slf4j
+public final class IndexStore {
+
+    private static final int MAGIC = 0x53534331; // "SSC1"
+    private static final String COMMIT_PREFIX = "commit_";
+    private static final String TERMS_PREFIX = "terms_";
+    private static final String TERMS_EXTENSION = ".dict";
+
+    private final Path directory;
+    // Segments already stored in this directory (opened or written by this store)
+    private final Map<Segment, StoredFile> storedSegments = new WeakHashMap<>();
+    private long generation = -1;
+
+    public IndexStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Index read from disk together with the user data saved with it.
+     */
+    public record Commit(IndexSnapshot snapshot, Map<String, String> userData) {
+    }
+
+    /**
+     * File holding a segment and the number of deletes it already reflects.
+     */
+    private record StoredFile(String fileName, int deletedCount) {
+    }
+
+    /**
+     * Writes the snapshot and publishes it as the newest commit.
+     */
+    public synchronized void commit(IndexSnapshot snapshot, Map<String, String> userData) throws IOException {
+        Files.createDirectories(directory);
+        long next = Math.max(generation, latestGeneration()) + 1;
+
+        Set<String> referenced = new HashSet<>();
+        List<String> segmentFiles = new ArrayList<>();
+        int counter = 0;
+        for (Segment segment : snapshot.segments()) {
+            StoredFile stored = storedSegments.get(segment);
+            if (stored == null || stored.deletedCount() != segment.deletedCount()
+                    || !Files.exists(directory.resolve(stored.fileName()))) {
+                // Tombstones are not part of the file format: store the live documents only
+                Segment live = segment.deletedCount() == 0
+                        ? segment
+                        : SegmentMerger.merge(List.of(segment), Collections.singletonList(segment.deletedDocs()));
+                if (live == null) continue;
+
+                String fileName = "_" + next + "_" + counter++ + SegmentFile.EXTENSION;
+                SegmentFile.write(live, directory.resolve(fileName));
+                stored = new StoredFile(fileName, segment.deletedCount());
+                storedSegments.put(segment, stored);
+            }
+            segmentFiles.add(stored.fileName());
+            referenced.add(stored.fileName());
+        }
+
+        String termsFile = TERMS_PREFIX + next + TERMS_EXTENSION;
+        writeTerms(snapshot.terms(), directory.resolve(termsFile));
+        referenced.add(termsFile);
+
+        Path manifest = directory.resolve(COMMIT_PREFIX + next);
+        Path pending = directory.resolve(COMMIT_PREFIX + next + ".tmp");
+        try (FileChannel channel = FileChannel.open(pending,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(MAGIC);
+            out.writeUTF(termsFile);
+            out.writeInt(segmentFiles.size());
+            for (String fileName : segmentFiles) {
+                out.writeUTF(fileName);
+            }
+            out.writeInt(userData.size());
+            for (Map.Entry<String, String> entry : userData.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(pending, manifest, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+        referenced.add(manifest.getFileName().toString());
+        generation = next;
+
+        deleteUnreferenced(referenced);
+        log.info("Index committed to {} (generation {}, {} segments, {} documents)",
+                directory, next, segmentFiles.size(), snapshot.documentCount());
+    }
+
+    /**
+     * Opens the newest commit.
+     *
+     * @return the commit or null when the directory holds no index
+     * @throws IOException when the files are missing or corrupt (callers should rebuild)
+     */
+    public synchronized Commit open() throws IOException {
+        long latest = latestGeneration();
+        if (latest < 0) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(COMMIT_PREFIX + latest))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an index commit: " + directory.resolve(COMMIT_PREFIX + latest));
+            }
+            TermDictionary terms = readTerms(directory.resolve(in.readUTF()));
+
+            int segmentCount = in.readInt();
+            List<Segment> segments = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                String fileName = in.readUTF();
+                Segment segment = SegmentFile.open(directory.resolve(fileName));
+                storedSegments.put(segment, new StoredFile(fileName, 0));
+                segments.add(segment);
+            }
+
+            int userDataSize = in.readInt();
+            Map<String, String> userData = new HashMap<>();
+            for (int i = 0; i < userDataSize; i++) {
+                userData.put(in.readUTF(), in.readUTF());
+            }
+
+            generation = latest;
+            return new Commit(new IndexSnapshot(terms, segments), userData);
+        }
+    }
+
+    private static void writeTerms(TermDictionary terms, Path file) throws IOException {
+        int size = terms.size();
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(size);
+            for (int id = 0; id < size; id++) {
+                byte[] bytes = terms.term(id).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Makes the rename of the manifest durable.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened for syncing on some platforms (Windows)
+            log.debug("Could not sync index directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static TermDictionary readTerms(Path file) throws IOException {
+        TermDictionary terms = new TermDictionary();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            int size = in.readInt();
+            for (int id = 0; id < size; id++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                // IDs are dense and assigned in order, so re-adding restores the same IDs
+                terms.getOrAdd(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+        return terms;
+    }
+
+    private long latestGeneration() throws IOException {
+        if (!Files.isDirectory(directory)) return -1;
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(COMMIT_PREFIX) && !name.endsWith(".tmp"))
+                    .mapToLong(name -> parseGeneration(name.substring(COMMIT_PREFIX.length())))
+                    .max()
+                    .orElse(-1);
+        }
+    }
+
+    private static long parseGeneration(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isIndexFile(String name) {
+        return name.startsWith(COMMIT_PREFIX)
+                || (name.startsWith(TERMS_PREFIX) && name.endsWith(TERMS_EXTENSION))
+                || (name.startsWith("_") && name.endsWith(SegmentFile.EXTENSION));
+    }
+
+    private void deleteUnreferenced(Set<String> referenced) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (referenced.contains(name) || !isIndexFile(name)) continue;
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // Still mapped on some platforms - the next commit retries
+                    log.debug("Could not delete old index file {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        storedSegments.values().removeIf(stored -> !referenced.contains(stored.fileName()));
+    }
+}
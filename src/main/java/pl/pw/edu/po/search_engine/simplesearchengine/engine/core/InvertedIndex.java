@@ -1,20 +1,40 @@
 package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
 
-import java.io.Serial;
-import java.io.Serializable;
+import lombok.extern.slf4j.Slf4j;
+
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Segment-based inverted index.
+ * - writers add documents to a small mutable buffer (synchronized on this index)
+ * - refresh() turns the buffer into an immutable segment and publishes a new snapshot, together with
+ *   the buffered deletes
+ * - readers work on the published snapshot (volatile read, no locks)
+ * - small segments are combined by a background merge thread following the MergePolicy
+ * Documents have separately indexed fields (see {@link Field}); methods taking a plain token list
+ * index the content only.
+ */
+@Slf4j
+public class InvertedIndex {
 
-public class InvertedIndex implements Serializable {
-    @Serial
-    private static final long serialVersionUID = 1L;
+    // Writers should refresh() once the buffer holds this many documents and deletes, see isBufferFull()
+    private static final int MAX_BUFFERED_DOCS = 1000;
 
-    // Mapping: term -> (document ID -> term positions)
-    private final Map<String, Map<Integer, List<Integer>>> index = new HashMap<>();
+    private final MergePolicy mergePolicy = new MergePolicy();
 
-    // Forward index: document ID -> content
-    private final Map<Integer, String> forwardIndex = new HashMap<>();
+    // Published state, replaced atomically by writers
+    private volatile IndexSnapshot snapshot = new IndexSnapshot(new TermDictionary(), List.of());
 
+    // Writer state (guarded by this)
+    private final SegmentBuffer buffer = new SegmentBuffer();
+    // Published documents to tombstone on the next refresh()
+    private final Set<Integer> bufferedDeletes = new HashSet<>();
     private int nextDocId;
+    private boolean mergeRunning;
+    private boolean closed;
+    private ExecutorService mergeExecutor;
 
     /**
      * Add documents to the inverted index (auto-generated ID).
@@ -25,16 +45,8 @@ public class InvertedIndex implements Serializable {
      */
     public synchronized int addDocument(String content, List<String> tokens) {
         int docId = nextDocId++;
-        forwardIndex.put(docId, content);
-
-        for (int position = 0; position < tokens.size(); position++) {
-            String term = tokens.get(position);
-
-            index
-                    .computeIfAbsent(term, k -> new HashMap<>())
-                    .computeIfAbsent(docId, k -> new ArrayList<>())
-                    .add(position);
-        }
+        buffer.add(docId, null, content, toTermIds(snapshot.terms(), Map.of(Field.CONTENT, tokens)), null);
+        refresh();
 
         return docId;
     }
@@ -48,16 +60,66 @@ public class InvertedIndex implements Serializable {
      * @param tokens tokenized content
      */
     public synchronized void addDocument(int docId, String content, List<String> tokens) {
-        forwardIndex.put(docId, content);
+        addDocument(docId, null, content, tokens);
+    }
 
-        for (int position = 0; position < tokens.size(); position++) {
-            String term = tokens.get(position);
+    /**
+     * Add document with specific ID and a stored title (searchable only when indexed as the TITLE field).
+     */
+    public synchronized void addDocument(int docId, String title, String content, List<String> tokens) {
+        addDocument(docId, title, content, tokens, null);
+    }
 
-            index
-                    .computeIfAbsent(term, k -> new HashMap<>())
-                    .computeIfAbsent(docId, k -> new ArrayList<>())
-                    .add(position);
-        }
+    /**
+     * Add document together with the character offsets of its tokens (used for highlighting).
+     *
+     * @param offsets start and end of every token in content: token i spans [offsets[2i], offsets[2i + 1])
+     */
+    public synchronized void addDocument(int docId, String title, String content, List<String> tokens, int[] offsets) {
+        addDocument(docId, title, content, Map.of(Field.CONTENT, tokens), offsets);
+    }
+
+    /**
+     * Add document with tokens of several fields.
+     *
+     * @param tokens analyzed tokens per field, missing fields are empty
+     * @param offsets start and end of every CONTENT token, null when not available
+     */
+    public synchronized void addDocument(int docId, String title, String content, Map<Field, List<String>> tokens,
+                                         int[] offsets) {
+        bufferDocument(docId, title, content, tokens, offsets);
+        refresh();
+    }
+
+    public synchronized void bufferDocument(int docId, String content, List<String> tokens) {
+        bufferDocument(docId, null, content, tokens);
+    }
+
+    /**
+     * Add document with specific ID without making it searchable yet.
+     * Useful for bulk loads: buffer many documents, then call refresh() once.
+     * A previously indexed version stays searchable until that refresh replaces it.
+     */
+    public synchronized void bufferDocument(int docId, String title, String content, List<String> tokens) {
+        bufferDocument(docId, title, content, tokens, null);
+    }
+
+    /**
+     * Buffer document together with the character offsets of its tokens (see addDocument).
+     */
+    public synchronized void bufferDocument(int docId, String title, String content, List<String> tokens,
+                                            int[] offsets) {
+        bufferDocument(docId, title, content, Map.of(Field.CONTENT, tokens), offsets);
+    }
+
+    /**
+     * Buffer document with tokens of several fields (see addDocument).
+     */
+    public synchronized void bufferDocument(int docId, String title, String content, Map<Field, List<String>> tokens,
+                                            int[] offsets) {
+        checkOffsets(tokens, offsets);
+        // Re-adding an existing ID replaces the previous version, published versions are deleted on refresh
+        buffer.add(docId, title, content, toTermIds(snapshot.terms(), tokens), offsets);
 
         // Update nextDocId to avoid conflicts
         if (docId >= nextDocId) {
@@ -66,24 +128,178 @@ public class InvertedIndex implements Serializable {
     }
 
     /**
-     * Returns map of documents (id -> positions) containing the term
+     * Whether the buffer reached the size at which writers should refresh().
+     * The index never refreshes on its own, visibility changes only when the writer decides.
+     */
+    public synchronized boolean isBufferFull() {
+        return buffer.size() + bufferedDeletes.size() >= MAX_BUFFERED_DOCS;
+    }
+
+    /**
+     * Publish buffered documents as a new segment and apply buffered deletes, making both visible to readers
+     * in one snapshot.
+     * Earlier versions of the buffered documents are deleted in the same snapshot, so an updated
+     * document is searchable all the time (old version before, new version after).
+     */
+    public synchronized void refresh() {
+        Segment segment = buffer.flush();
+        if (segment == null && bufferedDeletes.isEmpty()) return;
+
+        // Deletes were buffered before the documents now in the segment, so they only hit published segments
+        List<Segment> segments = delete(snapshot.segments(),
+                bufferedDeletes.stream().mapToInt(Integer::intValue).toArray());
+        bufferedDeletes.clear();
+        if (segment != null) {
+            segments = new ArrayList<>(replaceExisting(segments, segment));
+            segments.add(segment);
+        }
+        if (segments != snapshot.segments()) {
+            publish(segments);
+            maybeMerge();
+        }
+    }
+
+    /**
+     * New private partial index for one thread of a bulk build, see {@link PartialIndex}.
+     */
+    public PartialIndex newPartialIndex() {
+        return new PartialIndex(snapshot.terms());
+    }
+
+    /**
+     * Publishes documents built in partial indexes, keeping their IDs.
+     * Their segments are added as they are (no copying, no term remapping) and combined by background merges;
+     * previous versions of the same document IDs are deleted.
+     *
+     * @throws IllegalStateException when the index was cleared or restored since the partial indexes were created
+     */
+    public synchronized void addPartialIndexes(List<PartialIndex> partialIndexes) {
+        for (PartialIndex partialIndex : partialIndexes) {
+            if (partialIndex.terms() != snapshot.terms()) {
+                throw new IllegalStateException("Partial index was built for a different term dictionary");
+            }
+        }
+
+        List<Segment> added = new ArrayList<>();
+        for (PartialIndex partialIndex : partialIndexes) {
+            added.addAll(partialIndex.finish());
+        }
+        if (added.isEmpty()) return;
+
+        List<Segment> existing = snapshot.segments();
+        for (Segment segment : added) {
+            existing = replaceExisting(existing, segment);
+        }
+
+        List<Segment> segments = new ArrayList<>(existing);
+        segments.addAll(added);
+        publish(segments);
+        maybeMerge();
+    }
+
+    /**
+     * Replaces the whole index with a snapshot opened from disk (see IndexStore).
+     */
+    public synchronized void restore(IndexSnapshot restored) {
+        buffer.clear();
+        bufferedDeletes.clear();
+        snapshot = restored;
+        nextDocId = 0;
+        for (Segment segment : restored.segments()) {
+            if (segment.maxDoc() > 0) {
+                nextDocId = Math.max(nextDocId, segment.docId(segment.maxDoc() - 1) + 1);
+            }
+        }
+        maybeMerge();
+    }
+
+    /**
+     * Current point-in-time view used by readers.
+     */
+    public IndexSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns ID of the term or TermDictionary.NOT_FOUND if it was never indexed.
+     */
+    public int getTermId(String term) {
+        return snapshot.termId(term);
+    }
+
+    /**
+     * Returns term string for the term ID.
+     */
+    public String getTerm(int termId) {
+        return snapshot.term(termId);
+    }
+
+    /**
+     * Returns number of distinct terms in the dictionary.
+     */
+    public int getTermCount() {
+        return snapshot.terms().size();
+    }
+
+    /**
+     * Returns content postings of the term ID with document IDs, collected from all segments.
+     * Materializes a new list - search code iterates segments of snapshot() instead.
+     */
+    public PostingsList getPostings(int termId) {
+        PostingsList.Builder builder = new PostingsList.Builder();
+        for (Segment segment : snapshot.segments()) {
+            PostingsList postings = segment.postings(termId);
+            for (int i = 0; i < postings.size(); i++) {
+                if (segment.isDeleted(postings.docId(i))) continue;
+                int docId = segment.docId(postings.docId(i));
+                for (int position : postings.positions(i)) {
+                    builder.addOccurrence(docId, position);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns postings of the term (empty list if the term is unknown).
+     */
+    public PostingsList getPostings(String term) {
+        int termId = getTermId(term);
+        return termId == TermDictionary.NOT_FOUND ? PostingsList.EMPTY : getPostings(termId);
+    }
+
+    /**
+     * Returns map of documents (id -> positions) containing the term.
+     * Boxed view materialized from the postings list - use getPostings() on hot paths.
      */
     public Map<Integer, List<Integer>> getDocumentsForTerm(String term) {
-        return index.getOrDefault(term, Collections.emptyMap());
+        PostingsList postings = getPostings(term);
+        if (postings.isEmpty()) return Collections.emptyMap();
+
+        Map<Integer, List<Integer>> result = new LinkedHashMap<>();
+        for (int i = 0; i < postings.size(); i++) {
+            List<Integer> positions = new ArrayList<>(postings.freq(i));
+            for (int position : postings.positions(i)) {
+                positions.add(position);
+            }
+            result.put(postings.docId(i), positions);
+        }
+        return result;
     }
 
     /**
      * Returns original document content by its ID.
      */
     public String getDocumentById(int docId) {
-        return forwardIndex.get(docId);
+        Segment segment = snapshot.segmentOf(docId);
+        return segment == null ? null : segment.content(segment.ordOf(docId));
     }
 
     /**
      * Returns number of all documents in the index.
      */
     public int getDocumentCount() {
-        return forwardIndex.size();
+        return snapshot.documentCount();
     }
 
     /**
@@ -91,42 +307,65 @@ public class InvertedIndex implements Serializable {
      * (Note: duplicate of getDocumentById - consider removing)
      */
     public String getDocumentCountById(int docId) {
-        return forwardIndex.get(docId);
+        return getDocumentById(docId);
+    }
+
+    /**
+     * Returns number of published segments.
+     */
+    public int getSegmentCount() {
+        return snapshot.segments().size();
     }
 
     /**
      * Print whole index
      */
     public void printIndex() {
-        index.forEach((term, docs) -> {
-            System.out.println(term + " -> " + docs);
-        });
+        IndexSnapshot current = snapshot;
+        for (int termId = 0; termId < current.terms().size(); termId++) {
+            PostingsList postings = getPostings(termId);
+            if (!postings.isEmpty()) {
+                System.out.println(current.term(termId) + " -> " + postings);
+            }
+        }
     }
 
     /**
      * Clear all documents from the index (delegation pattern support)
      */
     public synchronized void clear() {
-        index.clear();
-        forwardIndex.clear();
+        buffer.clear();
+        bufferedDeletes.clear();
+        // Fresh dictionary: readers holding the old snapshot keep a consistent view
+        snapshot = new IndexSnapshot(new TermDictionary(), List.of());
         nextDocId = 0;
     }
 
     /**
      * Remove document from index
-     * Removes all term entries for the given document ID
+     * The document is only marked in the tombstones of a new version of its segment,
+     * postings are purged when the segment is merged. Readers of older snapshots still see it.
      */
     public synchronized void removeDocument(int docId) {
-        // 1. Remove from forward index
-        forwardIndex.remove(docId);
+        // 1. Remove from the not yet published buffer
+        buffer.remove(docId);
 
-        // 2. Remove from inverted index (all terms containing this docId)
-        index.forEach((term, docMap) -> {
-            docMap.remove(docId);
-        });
+        // 2. Tombstone the live copy in published segments
+        List<Segment> segments = delete(snapshot.segments(), new int[]{docId});
+        if (segments != snapshot.segments()) {
+            // Let the policy expunge deletes
+            publish(segments);
+            maybeMerge();
+        }
+    }
 
-        // 3. Remove empty terms (optional - clean up)
-        index.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+    /**
+     * Remove document without making the removal visible yet; the next refresh() publishes it together
+     * with the buffered documents. Re-adding the ID afterwards buffers a new version as usual.
+     */
+    public synchronized void bufferDelete(int docId) {
+        buffer.remove(docId);
+        bufferedDeletes.add(docId);
     }
 
     /**
@@ -134,19 +373,310 @@ public class InvertedIndex implements Serializable {
      * Preserves all documents from the new index with new document IDs
      */
     public synchronized void merge(InvertedIndex other) {
+        merge(other, false);
+    }
+
+    /**
+     * Merge another index with its own term dictionary, e.g. a part built on another thread or node.
+     * Its segments are adopted as they are: every distinct term is translated once, postings and positions
+     * are copied still encoded. New IDs follow the existing ones, so background merges of the adopted
+     * segments are plain concatenations (see SegmentMerger).
+     *
+     * @param keepDocIds true to keep the document IDs of the other index (replacing documents with the same IDs),
+     *                   false to assign new IDs after the existing ones
+     */
+    public synchronized void merge(InvertedIndex other, boolean keepDocIds) {
         if (other == null) return;
 
-        // Merge forward index and rebuild inverted index
-        other.forwardIndex.forEach((oldDocId, content) -> {
-            int newDocId = nextDocId++;
-            forwardIndex.put(newDocId, content);
-        });
-
-        // Rebuild the inverted index based on forward index
-        // Note: We lose term position information during merge, so we reset it
-        other.index.forEach((term, docMap) -> {
-            index.computeIfAbsent(term, k -> new HashMap<>())
-                    .putAll(docMap);
-        });
+        IndexSnapshot otherSnapshot = other.snapshot();
+        // other term ID -> term ID in this index, filled on first use
+        int[] termMap = new int[otherSnapshot.terms().size()];
+        Arrays.fill(termMap, -1);
+
+        List<Segment> existing = snapshot.segments();
+        List<Segment> added = new ArrayList<>();
+        for (Segment segment : otherSnapshot.segments()) {
+            // Tombstones are not copied: purge deleted documents first
+            Segment live = segment.deletedCount() == 0
+                    ? segment
+                    : SegmentMerger.merge(List.of(segment), Collections.singletonList(segment.deletedDocs()));
+            if (live == null) continue;
+
+            Segment adopted = adopt(live, otherSnapshot.terms(), termMap, keepDocIds);
+            if (keepDocIds) {
+                existing = replaceExisting(existing, adopted);
+            }
+            added.add(adopted);
+        }
+        List<Segment> segments = new ArrayList<>(existing);
+        segments.addAll(added);
+        publish(segments);
+        maybeMerge();
+    }
+
+    /**
+     * Merge all segments into one. Blocks writers until done.
+     */
+    public synchronized void forceMerge() throws InterruptedException {
+        refresh();
+        waitForMerges();
+        List<Segment> segments = snapshot.segments();
+        if (segments.isEmpty() || (segments.size() == 1 && segments.get(0).deletedCount() == 0)) return;
+
+        Segment merged = SegmentMerger.merge(segments, deletedDocs(segments));
+        publish(merged == null ? List.of() : List.of(merged));
+    }
+
+    /**
+     * Blocks until no background merge is running.
+     */
+    public synchronized void waitForMerges() throws InterruptedException {
+        while (mergeRunning) {
+            wait();
+        }
+    }
+
+    /**
+     * Deletes earlier versions of the added segment's documents and moves nextDocId past them.
+     *
+     * @return existing segments with the earlier versions deleted
+     */
+    private List<Segment> replaceExisting(List<Segment> existing, Segment added) {
+        int[] docIds = new int[added.maxDoc()];
+        for (int ord = 0; ord < added.maxDoc(); ord++) {
+            docIds[ord] = added.docId(ord);
+            buffer.remove(docIds[ord]);
+        }
+        if (added.maxDoc() > 0) {
+            nextDocId = Math.max(nextDocId, added.docId(added.maxDoc() - 1) + 1);
+        }
+        return delete(existing, docIds);
+    }
+
+    /**
+     * Segments with the live copies of the documents deleted: affected segments are replaced by a new
+     * version (see Segment.withDeleted), published snapshots keep the old one.
+     *
+     * @return the same list when none of the documents is live
+     */
+    private static List<Segment> delete(List<Segment> segments, int[] docIds) {
+        List<Segment> result = segments;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            BitSet ords = null;
+            for (int docId : docIds) {
+                int ord = segment.ordOf(docId);
+                if (ord >= 0 && !segment.isDeleted(ord)) {
+                    if (ords == null) ords = new BitSet(segment.maxDoc());
+                    ords.set(ord);
+                }
+            }
+            if (ords == null) continue;
+
+            if (result == segments) result = new ArrayList<>(segments);
+            result.set(i, segment.withDeleted(ords));
+        }
+        return result;
+    }
+
+    /**
+     * Copies segment of another index: new document IDs are assigned in ordinal order
+     * (so postings stay valid) unless the IDs are kept, term IDs are translated through termMap.
+     */
+    private Segment adopt(Segment segment, TermDictionary otherTerms, int[] termMap, boolean keepDocIds) {
+        TermDictionary terms = snapshot.terms();
+
+        int[] docIds = new int[segment.maxDoc()];
+        String[] titles = new String[segment.maxDoc()];
+        String[] contents = new String[segment.maxDoc()];
+        int[][] docLengths = new int[Field.COUNT][segment.maxDoc()];
+        byte[][] offsets = new byte[segment.maxDoc()][];
+        for (int ord = 0; ord < docIds.length; ord++) {
+            docIds[ord] = keepDocIds ? segment.docId(ord) : nextDocId++;
+            titles[ord] = segment.title(ord);
+            contents[ord] = segment.content(ord);
+            for (Field field : Field.values()) {
+                docLengths[field.ordinal()][ord] = segment.docLength(field, ord);
+            }
+            offsets[ord] = segment.offsetBytes(ord);
+        }
+
+        int[][] termIds = new int[Field.COUNT][];
+        PostingsList[][] postings = new PostingsList[Field.COUNT][];
+        for (Field field : Field.values()) {
+            // Pack (new term ID, source index) pairs and sort them to rebuild the sorted term table
+            long[] remapped = new long[segment.termCount(field)];
+            for (int i = 0; i < remapped.length; i++) {
+                int otherTermId = segment.termIdAt(field, i);
+                if (termMap[otherTermId] < 0) {
+                    termMap[otherTermId] = terms.getOrAdd(otherTerms.term(otherTermId));
+                }
+                remapped[i] = ((long) termMap[otherTermId] << 32) | i;
+            }
+            Arrays.sort(remapped);
+
+            int f = field.ordinal();
+            termIds[f] = new int[remapped.length];
+            postings[f] = new PostingsList[remapped.length];
+            for (int i = 0; i < remapped.length; i++) {
+                termIds[f][i] = (int) (remapped[i] >>> 32);
+                postings[f][i] = segment.postingsAt(field, (int) remapped[i]);
+            }
+        }
+        return new Segment(docIds, titles, contents, docLengths, offsets, termIds, postings);
+    }
+
+    static void checkOffsets(Map<Field, List<String>> tokens, int[] offsets) {
+        int contentTokens = tokens.getOrDefault(Field.CONTENT, List.of()).size();
+        if (offsets != null && offsets.length != 2 * contentTokens) {
+            throw new IllegalArgumentException("Expected start and end offset for each of " + contentTokens + " tokens");
+        }
+    }
+
+    /**
+     * Term IDs per field ordinal, one per token position.
+     * Known terms are looked up without locking, so concurrent partial builds only contend on new terms.
+     */
+    static int[][] toTermIds(TermDictionary terms, Map<Field, List<String>> tokens) {
+        int[][] termIds = new int[Field.COUNT][];
+        for (Field field : Field.values()) {
+            List<String> fieldTokens = tokens.getOrDefault(field, List.of());
+            int[] fieldTermIds = new int[fieldTokens.size()];
+            for (int position = 0; position < fieldTermIds.length; position++) {
+                String term = fieldTokens.get(position);
+                int termId = terms.lookup(term);
+                fieldTermIds[position] = termId != TermDictionary.NOT_FOUND ? termId : terms.getOrAdd(term);
+            }
+            termIds[field.ordinal()] = fieldTermIds;
+        }
+        return termIds;
+    }
+
+    private void publish(List<Segment> segments) {
+        snapshot = new IndexSnapshot(snapshot.terms(), segments);
+    }
+
+    /**
+     * Stops background merging once the index is no longer used (see ActiveIndex).
+     * A running merge finishes, snapshots stay readable.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (mergeExecutor != null) {
+            mergeExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Schedules a background merge when the policy finds one and no merge is running.
+     * Must be called while holding the lock.
+     */
+    private void maybeMerge() {
+        if (mergeRunning || closed) return;
+        List<Segment> candidates = mergePolicy.findMerge(snapshot.segments());
+        if (candidates.isEmpty()) return;
+
+        // Tombstones as of now are dropped by the merge, later ones are carried over on commit
+        List<BitSet> dropped = deletedDocs(candidates);
+        mergeRunning = true;
+        mergeExecutor().execute(() -> runMerge(candidates, dropped));
+    }
+
+    private void runMerge(List<Segment> sources, List<BitSet> dropped) {
+        Segment merged = null;
+        boolean failed = false;
+        try {
+            // The expensive part runs without the lock, readers and writers keep going
+            merged = SegmentMerger.merge(sources, dropped);
+        } catch (RuntimeException e) {
+            failed = true;
+            log.error("Segment merge failed: {}", e.getMessage(), e);
+        }
+
+        synchronized (this) {
+            try {
+                if (!failed) {
+                    commitMerge(sources, dropped, merged);
+                }
+            } finally {
+                mergeRunning = false;
+                notifyAll();
+            }
+            if (!failed) {
+                maybeMerge();
+            }
+        }
+    }
+
+    /**
+     * Swaps merged sources for the merged segment (null when every document was deleted).
+     * Sources are matched by core, they may have been replaced by versions with more deletes meanwhile;
+     * if a source is gone (index cleared or restored) the result is stale and dropped.
+     * Documents deleted while the merge was running are deleted in the merged segment as well.
+     */
+    private void commitMerge(List<Segment> sources, List<BitSet> dropped, Segment merged) {
+        List<Segment> current = snapshot.segments();
+        // source index -> its version in the current snapshot
+        Segment[] latest = new Segment[sources.size()];
+        List<Segment> segments = new ArrayList<>(current.size());
+        int mergedAt = -1;
+        for (Segment segment : current) {
+            int source = indexOfCore(sources, segment);
+            if (source < 0) {
+                segments.add(segment);
+                continue;
+            }
+            latest[source] = segment;
+            if (mergedAt < 0) mergedAt = segments.size();
+        }
+        for (Segment segment : latest) {
+            if (segment == null) return;
+        }
+
+        if (merged != null) {
+            segments.add(mergedAt, carryOverDeletes(latest, dropped, merged));
+        }
+        publish(segments);
+    }
+
+    private static int indexOfCore(List<Segment> sources, Segment segment) {
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i).sameCore(segment)) return i;
+        }
+        return -1;
+    }
+
+    private static Segment carryOverDeletes(Segment[] latest, List<BitSet> dropped, Segment merged) {
+        BitSet mergedOrds = new BitSet(merged.maxDoc());
+        for (int s = 0; s < latest.length; s++) {
+            BitSet deletedNow = latest[s].deletedDocs();
+            if (deletedNow == null) continue;
+            if (dropped.get(s) != null) {
+                deletedNow.andNot(dropped.get(s));
+            }
+            for (int ord = deletedNow.nextSetBit(0); ord >= 0; ord = deletedNow.nextSetBit(ord + 1)) {
+                mergedOrds.set(merged.ordOf(latest[s].docId(ord)));
+            }
+        }
+        return mergedOrds.isEmpty() ? merged : merged.withDeleted(mergedOrds);
+    }
+
+    private static List<BitSet> deletedDocs(List<Segment> segments) {
+        List<BitSet> deleted = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            deleted.add(segment.deletedDocs());
+        }
+        return deleted;
+    }
+
+    private ExecutorService mergeExecutor() {
+        if (mergeExecutor == null) {
+            mergeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "index-merge");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return mergeExecutor;
     }
 }
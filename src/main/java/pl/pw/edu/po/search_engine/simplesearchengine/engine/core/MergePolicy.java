@@ -0,0 +1,92 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Logarithmic merge policy.
+ * Segments are grouped into levels by size (level = log_mergeFactor(maxDoc)); as soon as one level
+ * holds mergeFactor segments they are merged into a single segment of the next level.
+ * Every document is therefore rewritten O(log n) times while the segment count stays O(log n).
+ * A segment whose share of deleted documents exceeds the expunge threshold is rewritten on its own,
+ * so tombstoned postings do not linger in segments that never reach a full level.
+ */
+public final class MergePolicy {
+
+    public static final int DEFAULT_MERGE_FACTOR = 10;
+    public static final double DEFAULT_EXPUNGE_DELETES_RATIO = 0.3;
+
+    private final int mergeFactor;
+    private final double expungeDeletesRatio;
+
+    public MergePolicy() {
+        this(DEFAULT_MERGE_FACTOR, DEFAULT_EXPUNGE_DELETES_RATIO);
+    }
+
+    public MergePolicy(int mergeFactor, double expungeDeletesRatio) {
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("Merge factor must be at least 2");
+        }
+        if (expungeDeletesRatio <= 0 || expungeDeletesRatio > 1) {
+            throw new IllegalArgumentException("Expunge deletes ratio must be in (0, 1]");
+        }
+        this.mergeFactor = mergeFactor;
+        this.expungeDeletesRatio = expungeDeletesRatio;
+    }
+
+    /**
+     * Picks segments to merge next.
+     *
+     * @return segments of the smallest full level, a single segment with too many deletes,
+     *         or empty list when nothing needs merging
+     */
+    public List<Segment> findMerge(List<Segment> segments) {
+        List<Segment> levelMerge = findLevelMerge(segments);
+        return levelMerge.isEmpty() ? findExpungeDeletes(segments) : levelMerge;
+    }
+
+    private List<Segment> findExpungeDeletes(List<Segment> segments) {
+        Segment worst = null;
+        double worstRatio = expungeDeletesRatio;
+        for (Segment segment : segments) {
+            double ratio = (double) segment.deletedCount() / segment.maxDoc();
+            if (ratio >= worstRatio) {
+                worst = segment;
+                worstRatio = ratio;
+            }
+        }
+        return worst == null ? List.of() : List.of(worst);
+    }
+
+    private List<Segment> findLevelMerge(List<Segment> segments) {
+        if (segments.size() < mergeFactor) return List.of();
+
+        List<Segment> sorted = new ArrayList<>(segments);
+        sorted.sort(Comparator.comparingInt(Segment::maxDoc));
+
+        int start = 0;
+        while (start < sorted.size()) {
+            int level = level(sorted.get(start).maxDoc());
+            int end = start;
+            while (end < sorted.size() && level(sorted.get(end).maxDoc()) == level) {
+                end++;
+            }
+            if (end - start >= mergeFactor) {
+                return List.copyOf(sorted.subList(start, start + mergeFactor));
+            }
+            start = end;
+        }
+        return List.of();
+    }
+
+    private int level(int maxDoc) {
+        int level = 0;
+        long bound = mergeFactor;
+        while (maxDoc >= bound) {
+            bound *= mergeFactor;
+            level++;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,66 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Private, unsynchronized part of a bulk build, filled by a single worker thread
+ * and published with {@link InvertedIndex#addPartialIndexes(List)}.
+ * Shares the term dictionary of the index it was created for, so its segments need no term remapping;
+ * document IDs are kept as given. Known terms are resolved without locking, only new terms take
+ * the dictionary lock. The buffer is flushed into a segment every few thousand documents.
+ */
+public final class PartialIndex {
+
+    private static final int MAX_BUFFERED_DOCS = 5000;
+
+    private final TermDictionary terms;
+    private final SegmentBuffer buffer = new SegmentBuffer();
+    private final List<Segment> segments = new ArrayList<>();
+    private int documentCount;
+
+    PartialIndex(TermDictionary terms) {
+        this.terms = terms;
+    }
+
+    /**
+     * Adds the document with tokens of several fields (see InvertedIndex.addDocument).
+     * IDs must be unique across all partial indexes published together.
+     */
+    public void addDocument(int docId, String title, String content, Map<Field, List<String>> tokens, int[] offsets) {
+        InvertedIndex.checkOffsets(tokens, offsets);
+        if (!buffer.contains(docId)) {
+            documentCount++;
+        }
+        buffer.add(docId, title, content, InvertedIndex.toTermIds(terms, tokens), offsets);
+        if (buffer.size() >= MAX_BUFFERED_DOCS) {
+            segments.add(buffer.flush());
+        }
+    }
+
+    /**
+     * Number of documents added so far.
+     */
+    public int documentCount() {
+        return documentCount;
+    }
+
+    TermDictionary terms() {
+        return terms;
+    }
+
+    /**
+     * Flushes the buffer and hands out all segments; the partial index is empty afterwards.
+     */
+    List<Segment> finish() {
+        Segment last = buffer.flush();
+        if (last != null) {
+            segments.add(last);
+        }
+        List<Segment> finished = new ArrayList<>(segments);
+        segments.clear();
+        documentCount = 0;
+        return finished;
+    }
+}
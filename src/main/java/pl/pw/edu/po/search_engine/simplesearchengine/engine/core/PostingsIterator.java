@@ -0,0 +1,124 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+/**
+ * Forward-only cursor over a {@link PostingsList}.
+ * Works purely on primitives, nothing is boxed while iterating.
+ *
+ * <pre>
+ * PostingsIterator it = postings.iterator();
+ * while (it.nextDoc() != PostingsIterator.NO_MORE_DOCS) {
+ *     for (int i = 0; i &lt; it.freq(); i++) {
+ *         int position = it.nextPosition();
+ *     }
+ * }
+ * </pre>
+ */
+public final class PostingsIterator {
+
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final PostingsList postings;
+    private final int[] docIds;
+    private final byte[] positions;
+
+    private int index = -1;
+    private int docId = -1;
+    private int positionOffset;
+    private int positionsLeft;
+    private int lastPosition;
+
+    PostingsIterator(PostingsList postings) {
+        this.postings = postings;
+        this.docIds = postings.docIds();
+        this.positions = postings.positionBytes();
+    }
+
+    /**
+     * Current document ID, -1 before the first call to nextDoc/advance.
+     */
+    public int docId() {
+        return docId;
+    }
+
+    /**
+     * Moves to the next document.
+     *
+     * @return document ID or NO_MORE_DOCS when exhausted
+     */
+    public int nextDoc() {
+        return moveTo(index + 1);
+    }
+
+    /**
+     * Moves to the first document with ID greater than or equal to target.
+     * Uses exponential search from the current position followed by binary search,
+     * so skipping over long lists stays logarithmic in the skipped distance.
+     *
+     * @return document ID or NO_MORE_DOCS when exhausted
+     */
+    public int advance(int target) {
+        if (docId >= target) return docId;
+
+        int low = index + 1;
+        int bound = 1;
+        while (low + bound < docIds.length && docIds[low + bound] < target) {
+            bound <<= 1;
+        }
+        int high = Math.min(low + bound, docIds.length - 1);
+        low = low + (bound >> 1);
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (docIds[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return moveTo(low);
+    }
+
+    /**
+     * Term frequency in the current document.
+     */
+    public int freq() {
+        return postings.freq(index);
+    }
+
+    /**
+     * Returns next position of the term in the current document.
+     * May be called at most freq() times per document.
+     */
+    public int nextPosition() {
+        if (positionsLeft == 0) {
+            throw new IllegalStateException("No more positions for document " + docId);
+        }
+        long packed = VByte.read(positions, positionOffset);
+        positionOffset = (int) (packed >>> 32);
+        lastPosition += (int) packed;
+        positionsLeft--;
+        return lastPosition;
+    }
+
+    /**
+     * Total number of documents in the underlying list.
+     */
+    public int cost() {
+        return docIds.length;
+    }
+
+    private int moveTo(int newIndex) {
+        if (newIndex >= docIds.length) {
+            index = docIds.length;
+            docId = NO_MORE_DOCS;
+            positionsLeft = 0;
+            return docId;
+        }
+        index = newIndex;
+        docId = docIds[newIndex];
+        positionOffset = postings.positionStart(newIndex);
+        positionsLeft = postings.freq(newIndex);
+        lastPosition = 0;
+        return docId;
+    }
+}
@@ -0,0 +1,232 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import java.util.Arrays;
+
+/**
+ * Immutable postings list of a single term.
+ * - document IDs are kept in a sorted int[] (no boxing, binary-searchable)
+ * - term frequency per document in a parallel int[]
+ * - positions are delta-encoded and variable-byte compressed into one byte[]
+ */
+public final class PostingsList {
+
+    public static final PostingsList EMPTY = new PostingsList(new int[0], new int[0], new int[1], new byte[0]);
+
+    private final int[] docIds;
+    private final int[] freqs;
+    // positionStarts[i] .. positionStarts[i + 1] is the byte range of document i
+    private final int[] positionStarts;
+    private final byte[] positions;
+
+    PostingsList(int[] docIds, int[] freqs, int[] positionStarts, byte[] positions) {
+        this.docIds = docIds;
+        this.freqs = freqs;
+        this.positionStarts = positionStarts;
+        this.positions = positions;
+    }
+
+    /**
+     * Number of documents containing the term (document frequency).
+     */
+    public int size() {
+        return docIds.length;
+    }
+
+    public boolean isEmpty() {
+        return docIds.length == 0;
+    }
+
+    /**
+     * Document ID at given index (IDs are sorted ascending).
+     */
+    public int docId(int index) {
+        return docIds[index];
+    }
+
+    /**
+     * Term frequency of the document at given index.
+     */
+    public int freq(int index) {
+        return freqs[index];
+    }
+
+    /**
+     * Binary search for the document.
+     *
+     * @return index of the document or a negative value if term does not occur in it
+     */
+    public int indexOf(int docId) {
+        return Arrays.binarySearch(docIds, docId);
+    }
+
+    /**
+     * Decodes positions of the document at given index into a new array.
+     * Hot paths should use {@link PostingsIterator#nextPosition()} instead.
+     */
+    public int[] positions(int index) {
+        int[] result = new int[freqs[index]];
+        int offset = positionStarts[index];
+        int position = 0;
+        for (int i = 0; i < result.length; i++) {
+            long packed = VByte.read(positions, offset);
+            position += (int) packed;
+            offset = (int) (packed >>> 32);
+            result[i] = position;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new iterator positioned before the first document.
+     */
+    public PostingsIterator iterator() {
+        return new PostingsIterator(this);
+    }
+
+    int[] docIds() {
+        return docIds;
+    }
+
+    int positionStart(int index) {
+        return positionStarts[index];
+    }
+
+    byte[] positionBytes() {
+        return positions;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < docIds.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(docIds[i]).append('=').append(Arrays.toString(positions(i)));
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Mutable accumulator used by the index while documents are being added.
+     * Occurrences of one document must be added in increasing position order,
+     * documents themselves may arrive in any order (they are sorted on build).
+     */
+    public static final class Builder {
+        private int[] docIds = new int[4];
+        private int[] freqs = new int[4];
+        private int[] positionStarts = new int[5];
+        private byte[] positions = new byte[16];
+        private int size;
+        private int positionsLength;
+        private int lastPosition;
+        private boolean sorted = true;
+
+        // Cached immutable view, dropped on every modification
+        private PostingsList built;
+
+        /**
+         * Records one occurrence of the term.
+         * Consecutive calls with the same docId append positions to that document.
+         */
+        public void addOccurrence(int docId, int position) {
+            if (size == 0 || docIds[size - 1] != docId) {
+                startDocument(docId);
+            }
+            ensurePositionsCapacity(VByte.size(position - lastPosition));
+            positionsLength = VByte.write(positions, positionsLength, position - lastPosition);
+            lastPosition = position;
+            freqs[size - 1]++;
+            positionStarts[size] = positionsLength;
+            built = null;
+        }
+
+        /**
+         * Appends a whole document with already encoded positions (used when merging segments).
+         * Copies the compressed bytes as they are, without decoding.
+         */
+        void appendEncoded(int docId, int freq, byte[] source, int from, int to) {
+            startDocument(docId);
+            int length = to - from;
+            ensurePositionsCapacity(length);
+            System.arraycopy(source, from, positions, positionsLength, length);
+            positionsLength += length;
+            freqs[size - 1] = freq;
+            positionStarts[size] = positionsLength;
+            built = null;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Returns immutable, sorted snapshot of the accumulated postings.
+         */
+        public PostingsList build() {
+            PostingsList result = built;
+            if (result != null) return result;
+            if (size == 0) return PostingsList.EMPTY;
+
+            result = sorted ? copy() : sortedCopy();
+            built = result;
+            return result;
+        }
+
+        private void startDocument(int docId) {
+            if (size > 0 && docId < docIds[size - 1]) {
+                sorted = false;
+            }
+            if (size == docIds.length) {
+                int capacity = size * 2;
+                docIds = Arrays.copyOf(docIds, capacity);
+                freqs = Arrays.copyOf(freqs, capacity);
+                positionStarts = Arrays.copyOf(positionStarts, capacity + 1);
+            }
+            docIds[size] = docId;
+            freqs[size] = 0;
+            positionStarts[size] = positionsLength;
+            size++;
+            positionStarts[size] = positionsLength;
+            lastPosition = 0;
+        }
+
+        private void ensurePositionsCapacity(int extra) {
+            if (positionsLength + extra > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, positionsLength + extra));
+            }
+        }
+
+        private PostingsList copy() {
+            return new PostingsList(
+                    Arrays.copyOf(docIds, size),
+                    Arrays.copyOf(freqs, size),
+                    Arrays.copyOf(positionStarts, size + 1),
+                    Arrays.copyOf(positions, positionsLength));
+        }
+
+        private PostingsList sortedCopy() {
+            // Sort packed (docId, index) pairs to get the permutation without boxing
+            long[] keyed = new long[size];
+            for (int i = 0; i < size; i++) {
+                keyed[i] = ((long) docIds[i] << 32) | i;
+            }
+            Arrays.sort(keyed);
+
+            int[] newDocIds = new int[size];
+            int[] newFreqs = new int[size];
+            int[] newStarts = new int[size + 1];
+            byte[] newPositions = new byte[positionsLength];
+            int offset = 0;
+            for (int i = 0; i < size; i++) {
+                int source = (int) keyed[i];
+                int length = positionStarts[source + 1] - positionStarts[source];
+                newDocIds[i] = docIds[source];
+                newFreqs[i] = freqs[source];
+                newStarts[i] = offset;
+                System.arraycopy(positions, positionStarts[source], newPositions, offset, length);
+                offset += length;
+            }
+            newStarts[size] = offset;
+            return new PostingsList(newDocIds, newFreqs, newStarts, newPositions);
+        }
+    }
+}
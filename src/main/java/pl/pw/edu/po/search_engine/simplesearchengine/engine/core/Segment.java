@@ -0,0 +1,363 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable slice of the index.
+ * Documents are stored in ascending document ID order and addressed by their ordinal (0..maxDoc-1);
+ * postings inside a segment contain ordinals, not document IDs.
+ * A segment is never modified once published, so it can be read without any locking. Deletes
+ * (tombstones) produce a new version of the segment, see withDeleted(): it shares documents and
+ * postings with the previous version and only has its own deleted-docs bitset. Snapshots holding the
+ * previous version keep seeing the documents; readers skip deleted ordinals and merges drop them physically.
+ * Every {@link Field} has its own term table, postings and document lengths; methods without a field
+ * argument refer to the content.
+ * A segment is either built on the heap or opened from a memory-mapped {@link SegmentFile};
+ * mapped segments decode postings on first use and stored fields (title, content, offsets) on every access.
+ */
+public final class Segment {
+
+    // ordinal -> document ID (sorted ascending)
+    private final int[] docIds;
+    // ordinal -> stored title and content (null for mapped segments)
+    private final String[] titles;
+    private final String[] contents;
+    // field -> ordinal -> number of tokens after analysis (length normalization without re-tokenizing)
+    private final int[][] docLengths;
+    private final long[] totalDocLengths;
+    // ordinal -> VByte encoded character offsets of the content tokens (null for mapped segments), see offsets()
+    private final byte[][] offsets;
+    // field -> sorted term IDs present in this segment and their postings
+    private final int[][] termIds;
+    // mapped segments fill entries lazily; PostingsList is immutable, so racing decoders are harmless
+    private final PostingsList[][] postings;
+    // field -> per-term score bounds, computed on first use by pruning queries (see BlockMaxima);
+    // allocated up front so that all versions of the segment share it
+    private BlockMaxima[][] blockMaxima = new BlockMaxima[Field.COUNT][];
+
+    // Mapped file and absolute offsets of the postings / stored fields inside it (null for heap segments)
+    private final ByteBuffer data;
+    private final int[][] postingsOffsets;
+    // title of ord starts at storedOffsets[3 * ord], content at [3 * ord + 1], token offsets at [3 * ord + 2]
+    private final int[] storedOffsets;
+
+    // Tombstones of this version, never changed after construction
+    private final long[] deleted;
+    private final int deletedCount;
+
+    /**
+     * Heap segment; docLengths, termIds and postings are indexed by {@link Field#ordinal()}.
+     */
+    Segment(int[] docIds, String[] titles, String[] contents, int[][] docLengths, byte[][] offsets, int[][] termIds,
+            PostingsList[][] postings) {
+        this.docIds = docIds;
+        this.titles = titles;
+        this.contents = contents;
+        this.docLengths = docLengths;
+        this.offsets = offsets;
+        this.totalDocLengths = sums(docLengths);
+        this.termIds = termIds;
+        this.postings = postings;
+        this.data = null;
+        this.postingsOffsets = null;
+        this.storedOffsets = null;
+        this.deleted = new long[words(docIds.length)];
+        this.deletedCount = 0;
+    }
+
+    Segment(int[] docIds, int[][] docLengths, int[][] termIds, ByteBuffer data,
+            int[][] postingsOffsets, int[] storedOffsets) {
+        this.docIds = docIds;
+        this.titles = null;
+        this.contents = null;
+        this.docLengths = docLengths;
+        this.offsets = null;
+        this.totalDocLengths = sums(docLengths);
+        this.termIds = termIds;
+        this.postings = new PostingsList[Field.COUNT][];
+        for (int field = 0; field < Field.COUNT; field++) {
+            this.postings[field] = new PostingsList[termIds[field].length];
+        }
+        this.data = data;
+        this.postingsOffsets = postingsOffsets;
+        this.storedOffsets = storedOffsets;
+        this.deleted = new long[words(docIds.length)];
+        this.deletedCount = 0;
+    }
+
+    /**
+     * New version of the segment with other tombstones, sharing everything else.
+     */
+    private Segment(Segment base, long[] deleted, int deletedCount) {
+        this.docIds = base.docIds;
+        this.titles = base.titles;
+        this.contents = base.contents;
+        this.docLengths = base.docLengths;
+        this.totalDocLengths = base.totalDocLengths;
+        this.offsets = base.offsets;
+        this.termIds = base.termIds;
+        this.postings = base.postings;
+        this.blockMaxima = base.blockMaxima;
+        this.data = base.data;
+        this.postingsOffsets = base.postingsOffsets;
+        this.storedOffsets = base.storedOffsets;
+        this.deleted = deleted;
+        this.deletedCount = deletedCount;
+    }
+
+    /**
+     * Number of documents in this segment.
+     */
+    public int maxDoc() {
+        return docIds.length;
+    }
+
+    /**
+     * Document ID of the ordinal.
+     */
+    public int docId(int ord) {
+        return docIds[ord];
+    }
+
+    /**
+     * Ordinal of the document ID, negative if the document is not in this segment.
+     */
+    public int ordOf(int docId) {
+        return Arrays.binarySearch(docIds, docId);
+    }
+
+    /**
+     * Number of content tokens the document had when it was indexed.
+     */
+    public int docLength(int ord) {
+        return docLength(Field.CONTENT, ord);
+    }
+
+    /**
+     * Number of tokens of the field when the document was indexed.
+     */
+    public int docLength(Field field, int ord) {
+        return docLengths[field.ordinal()][ord];
+    }
+
+    /**
+     * Sum of all content lengths, deleted documents included.
+     */
+    public long totalDocLength() {
+        return totalDocLength(Field.CONTENT);
+    }
+
+    /**
+     * Sum of the field lengths of all documents, deleted documents included.
+     */
+    public long totalDocLength(Field field) {
+        return totalDocLengths[field.ordinal()];
+    }
+
+    /**
+     * Whether the document at the ordinal was deleted. Deleted documents stay in the postings
+     * until the segment is merged, so every reader has to check this.
+     */
+    public boolean isDeleted(int ord) {
+        return (deleted[ord >>> 6] & (1L << ord)) != 0;
+    }
+
+    /**
+     * Number of deleted (but not yet merged away) documents.
+     */
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Stored title of the ordinal (empty when the document has none).
+     */
+    public String title(int ord) {
+        if (titles != null) return titles[ord];
+        return SegmentFile.readString(data, storedOffsets[3 * ord], storedOffsets[3 * ord + 1]);
+    }
+
+    /**
+     * Stored content of the ordinal.
+     */
+    public String content(int ord) {
+        if (contents != null) return contents[ord];
+        return SegmentFile.readString(data, storedOffsets[3 * ord + 1], storedOffsets[3 * ord + 2]);
+    }
+
+    /**
+     * Character offsets of the document's tokens in the stored content: the token at position p spans
+     * [offsets[2 * p], offsets[2 * p + 1]). Empty when the document was indexed without offsets.
+     */
+    public int[] offsets(int ord) {
+        byte[] bytes = offsetBytes(ord);
+        if (bytes.length == 0) return new int[0];
+
+        // Deltas: start - previous end, end - start
+        int[] result = new int[2 * docLength(ord)];
+        int offset = 0;
+        int previous = 0;
+        for (int i = 0; i < result.length; i++) {
+            long packed = VByte.read(bytes, offset);
+            offset = (int) (packed >>> 32);
+            previous += (int) packed;
+            result[i] = previous;
+        }
+        return result;
+    }
+
+    /**
+     * Content postings (with ordinals) of the term, empty when the term does not occur in this segment.
+     */
+    public PostingsList postings(int termId) {
+        return postings(Field.CONTENT, termId);
+    }
+
+    /**
+     * Postings of the term in the field, empty when the term does not occur there.
+     */
+    public PostingsList postings(Field field, int termId) {
+        int index = Arrays.binarySearch(termIds[field.ordinal()], termId);
+        return index < 0 ? PostingsList.EMPTY : postingsAt(field, index);
+    }
+
+    /**
+     * Bounds of the term's content postings, see blockMaxima(Field, int).
+     */
+    public BlockMaxima blockMaxima(int termId) {
+        return blockMaxima(Field.CONTENT, termId);
+    }
+
+    /**
+     * Block-wise frequency / length bounds of the term's postings in the field, empty when the term
+     * does not occur there. Computed once per term and cached; racing computations produce equal results.
+     */
+    public BlockMaxima blockMaxima(Field field, int termId) {
+        int f = field.ordinal();
+        int index = Arrays.binarySearch(termIds[f], termId);
+        if (index < 0) return BlockMaxima.EMPTY;
+
+        BlockMaxima[][] cache = blockMaxima;
+        if (cache == null) {
+            cache = new BlockMaxima[Field.COUNT][];
+            blockMaxima = cache;
+        }
+        if (cache[f] == null) {
+            cache[f] = new BlockMaxima[termIds[f].length];
+        }
+        BlockMaxima maxima = cache[f][index];
+        if (maxima == null) {
+            maxima = BlockMaxima.of(postingsAt(field, index), docLengths[f]);
+            cache[f][index] = maxima;
+        }
+        return maxima;
+    }
+
+    /**
+     * Number of distinct terms of the field in this segment.
+     */
+    int termCount(Field field) {
+        return termIds[field.ordinal()].length;
+    }
+
+    int termIdAt(Field field, int index) {
+        return termIds[field.ordinal()][index];
+    }
+
+    /**
+     * Encoded token offsets of the ordinal, copied as they are by merges and segment files.
+     */
+    byte[] offsetBytes(int ord) {
+        if (offsets != null) return offsets[ord];
+        return SegmentFile.readBytes(data, storedOffsets[3 * ord + 2], storedOffsets[3 * ord + 3]);
+    }
+
+    /**
+     * VByte encodes token offsets as produced by the analyzer (start, end per position, ascending).
+     *
+     * @param tokenOffsets start and end of every token, null when not available
+     */
+    static byte[] encodeOffsets(int[] tokenOffsets) {
+        if (tokenOffsets == null || tokenOffsets.length == 0) return new byte[0];
+
+        byte[] buffer = new byte[5 * tokenOffsets.length];
+        int size = 0;
+        int previous = 0;
+        for (int value : tokenOffsets) {
+            if (value < previous) {
+                throw new IllegalArgumentException("Token offsets must be ascending");
+            }
+            size = VByte.write(buffer, size, value - previous);
+            previous = value;
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    PostingsList postingsAt(Field field, int index) {
+        int f = field.ordinal();
+        PostingsList list = postings[f][index];
+        if (list == null) {
+            list = SegmentFile.readPostings(data, postingsOffsets[f][index]);
+            postings[f][index] = list;
+        }
+        return list;
+    }
+
+    /**
+     * Version of this segment with the ordinals deleted as well (copy-on-write: this version is unchanged).
+     *
+     * @return this segment when all of them were deleted already
+     */
+    Segment withDeleted(BitSet ords) {
+        long[] words = deleted.clone();
+        int count = deletedCount;
+        for (int ord = ords.nextSetBit(0); ord >= 0; ord = ords.nextSetBit(ord + 1)) {
+            long bit = 1L << ord;
+            if ((words[ord >>> 6] & bit) == 0) {
+                words[ord >>> 6] |= bit;
+                count++;
+            }
+        }
+        return count == deletedCount ? this : new Segment(this, words, count);
+    }
+
+    /**
+     * Whether both are versions of the same segment (same documents and postings, maybe other deletes).
+     */
+    boolean sameCore(Segment other) {
+        return docIds == other.docIds;
+    }
+
+    /**
+     * Copy of the tombstones, or null when nothing is deleted.
+     */
+    BitSet deletedDocs() {
+        if (deletedCount == 0) return null;
+        return BitSet.valueOf(deleted);
+    }
+
+    boolean isMapped() {
+        return data != null;
+    }
+
+    private static long[] sums(int[][] values) {
+        long[] sums = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            for (int value : values[i]) {
+                sums[i] += value;
+            }
+        }
+        return sums;
+    }
+
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    @Override
+    public String toString() {
+        return "Segment{maxDoc=" + docIds.length + ", deleted=" + deletedCount + ", terms=" + termIds[Field.CONTENT.ordinal()].length + ", mapped=" + isMapped() + "}";
+    }
+}
@@ -0,0 +1,119 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import java.util.*;
+
+/**
+ * Small mutable in-memory buffer of documents that are not searchable yet.
+ * Only touched by writers (under the index lock); flushed into an immutable {@link Segment}.
+ */
+final class SegmentBuffer {
+
+    private final Map<Integer, BufferedDocument> documents = new HashMap<>();
+
+    /**
+     * Buffers the document, replacing a buffered document with the same ID.
+     *
+     * @param termIds per {@link Field#ordinal()}: one term ID per token position of the field
+     * @param offsets start and end character of every content token, null when not available
+     */
+    void add(int docId, String title, String content, int[][] termIds, int[] offsets) {
+        documents.put(docId, new BufferedDocument(docId, title == null ? "" : title, content, termIds,
+                Segment.encodeOffsets(offsets)));
+    }
+
+    boolean remove(int docId) {
+        return documents.remove(docId) != null;
+    }
+
+    boolean contains(int docId) {
+        return documents.containsKey(docId);
+    }
+
+    int size() {
+        return documents.size();
+    }
+
+    boolean isEmpty() {
+        return documents.isEmpty();
+    }
+
+    void clear() {
+        documents.clear();
+    }
+
+    /**
+     * Builds segment from buffered documents and empties the buffer.
+     *
+     * @return new segment or null when the buffer is empty
+     */
+    Segment flush() {
+        if (documents.isEmpty()) return null;
+
+        BufferedDocument[] sorted = documents.values().toArray(new BufferedDocument[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(BufferedDocument::docId));
+        documents.clear();
+
+        int[] docIds = new int[sorted.length];
+        String[] titles = new String[sorted.length];
+        String[] contents = new String[sorted.length];
+        byte[][] offsets = new byte[sorted.length][];
+        for (int ord = 0; ord < sorted.length; ord++) {
+            BufferedDocument document = sorted[ord];
+            docIds[ord] = document.docId();
+            titles[ord] = document.title();
+            contents[ord] = document.content();
+            offsets[ord] = document.offsets();
+        }
+
+        int[][] docLengths = new int[Field.COUNT][];
+        int[][] termIds = new int[Field.COUNT][];
+        PostingsList[][] postings = new PostingsList[Field.COUNT][];
+        for (int field = 0; field < Field.COUNT; field++) {
+            docLengths[field] = new int[sorted.length];
+            termIds[field] = invert(sorted, field, docLengths[field]);
+
+            PostingsList.Builder[] builders = new PostingsList.Builder[termIds[field].length];
+            for (int ord = 0; ord < sorted.length; ord++) {
+                int[] tokens = sorted[ord].termIds()[field];
+                for (int position = 0; position < tokens.length; position++) {
+                    int slot = Arrays.binarySearch(termIds[field], tokens[position]);
+                    if (builders[slot] == null) {
+                        builders[slot] = new PostingsList.Builder();
+                    }
+                    builders[slot].addOccurrence(ord, position);
+                }
+            }
+            postings[field] = new PostingsList[builders.length];
+            for (int i = 0; i < builders.length; i++) {
+                postings[field][i] = builders[i].build();
+            }
+        }
+        return new Segment(docIds, titles, contents, docLengths, offsets, termIds, postings);
+    }
+
+    /**
+     * Records the field lengths and returns the distinct term IDs of the field in the whole buffer,
+     * sorted - doubles as the segment term table of the field.
+     */
+    private static int[] invert(BufferedDocument[] sorted, int field, int[] docLengths) {
+        int tokenCount = 0;
+        for (int ord = 0; ord < sorted.length; ord++) {
+            docLengths[ord] = sorted[ord].termIds()[field].length;
+            tokenCount += docLengths[ord];
+        }
+        int[] allTerms = new int[tokenCount];
+        int offset = 0;
+        for (BufferedDocument document : sorted) {
+            int[] tokens = document.termIds()[field];
+            System.arraycopy(tokens, 0, allTerms, offset, tokens.length);
+            offset += tokens.length;
+        }
+        return Arrays.stream(allTerms).sorted().distinct().toArray();
+    }
+
+    /**
+     * Document as seen by the analyzer: per field one term ID per token position, encoded content token offsets.
+     */
+    private record BufferedDocument(int docId, String title, String content, int[][] termIds, byte[] offsets) {
+    }
+}
@@ -0,0 +1,207 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file format of one segment, read through a memory mapping.
+ *
+ * <pre>
+ * header    magic, version
+ * postings  per field, per term: size, docIds[size], freqs[size], positionStarts[size + 1], position bytes
+ * stored    UTF-8 title, UTF-8 content and VByte token offsets of every document, back to back
+ * tables    docIds[maxDoc], per field docLengths[maxDoc],
+ *           per field termIds[termCount] and postingsOffsets[termCount], storedOffsets[3 * maxDoc + 1]
+ * trailer   maxDoc, termCount of every field, tablesOffset, magic
+ * </pre>
+ * Fields appear in {@link Field} order.
+ * Tables go last so the file is written in one sequential pass; offsets are absolute.
+ * Opening a segment reads only the tables, postings and stored fields are decoded on demand.
+ */
+final class SegmentFile {
+
+    static final String EXTENSION = ".seg";
+
+    private static final int MAGIC = 0x53534547; // "SSEG"
+    private static final int VERSION = 5;
+    private static final int TRAILER_BYTES = (3 + Field.COUNT) * Integer.BYTES;
+
+    private SegmentFile() {
+    }
+
+    static void write(Segment segment, Path file) throws IOException {
+        int maxDoc = segment.maxDoc();
+        int[][] postingsOffsets = new int[Field.COUNT][];
+        int[] storedOffsets = new int[3 * maxDoc + 1];
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            for (Field field : Field.values()) {
+                int[] fieldOffsets = new int[segment.termCount(field)];
+                for (int i = 0; i < fieldOffsets.length; i++) {
+                    fieldOffsets[i] = checkedOffset(out);
+                    writePostings(out, segment.postingsAt(field, i));
+                }
+                postingsOffsets[field.ordinal()] = fieldOffsets;
+            }
+            for (int ord = 0; ord < maxDoc; ord++) {
+                storedOffsets[3 * ord] = checkedOffset(out);
+                out.write(segment.title(ord).getBytes(StandardCharsets.UTF_8));
+                storedOffsets[3 * ord + 1] = checkedOffset(out);
+                out.write(segment.content(ord).getBytes(StandardCharsets.UTF_8));
+                storedOffsets[3 * ord + 2] = checkedOffset(out);
+                out.write(segment.offsetBytes(ord));
+            }
+            storedOffsets[3 * maxDoc] = checkedOffset(out);
+
+            int tablesOffset = checkedOffset(out);
+            for (int ord = 0; ord < maxDoc; ord++) {
+                out.writeInt(segment.docId(ord));
+            }
+            for (Field field : Field.values()) {
+                for (int ord = 0; ord < maxDoc; ord++) {
+                    out.writeInt(segment.docLength(field, ord));
+                }
+            }
+            for (Field field : Field.values()) {
+                for (int i = 0; i < segment.termCount(field); i++) {
+                    out.writeInt(segment.termIdAt(field, i));
+                }
+                writeInts(out, postingsOffsets[field.ordinal()]);
+            }
+            writeInts(out, storedOffsets);
+
+            out.writeInt(maxDoc);
+            for (Field field : Field.values()) {
+                out.writeInt(segment.termCount(field));
+            }
+            out.writeInt(tablesOffset);
+            out.writeInt(MAGIC);
+            checkedOffset(out);
+
+            out.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Maps the file and reads its tables. The mapping stays valid after the channel is closed.
+     */
+    static Segment open(Path file) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 2 * Integer.BYTES + TRAILER_BYTES) {
+                throw new IOException("Segment file too short: " + file);
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        int trailer = data.capacity() - TRAILER_BYTES;
+        if (data.getInt(0) != MAGIC || data.getInt(data.capacity() - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a segment file: " + file);
+        }
+        if (data.getInt(4) != VERSION) {
+            throw new IOException("Unsupported segment version " + data.getInt(4) + ": " + file);
+        }
+
+        int maxDoc = data.getInt(trailer);
+        int[] termCounts = readInts(data, trailer + Integer.BYTES, Field.COUNT);
+        int offset = data.getInt(trailer + (1 + Field.COUNT) * Integer.BYTES);
+
+        int[] docIds = readInts(data, offset, maxDoc);
+        offset += maxDoc * Integer.BYTES;
+        int[][] docLengths = new int[Field.COUNT][];
+        for (int field = 0; field < Field.COUNT; field++) {
+            docLengths[field] = readInts(data, offset, maxDoc);
+            offset += maxDoc * Integer.BYTES;
+        }
+        int[][] termIds = new int[Field.COUNT][];
+        int[][] postingsOffsets = new int[Field.COUNT][];
+        for (int field = 0; field < Field.COUNT; field++) {
+            termIds[field] = readInts(data, offset, termCounts[field]);
+            offset += termCounts[field] * Integer.BYTES;
+            postingsOffsets[field] = readInts(data, offset, termCounts[field]);
+            offset += termCounts[field] * Integer.BYTES;
+        }
+        int[] storedOffsets = readInts(data, offset, 3 * maxDoc + 1);
+
+        return new Segment(docIds, docLengths, termIds, data, postingsOffsets, storedOffsets);
+    }
+
+    static PostingsList readPostings(ByteBuffer data, int offset) {
+        int size = data.getInt(offset);
+        offset += Integer.BYTES;
+        int[] docIds = readInts(data, offset, size);
+        offset += size * Integer.BYTES;
+        int[] freqs = readInts(data, offset, size);
+        offset += size * Integer.BYTES;
+        int[] positionStarts = readInts(data, offset, size + 1);
+        offset += (size + 1) * Integer.BYTES;
+
+        byte[] positions = new byte[positionStarts[size]];
+        data.get(offset, positions);
+        return new PostingsList(docIds, freqs, positionStarts, positions);
+    }
+
+    static String readString(ByteBuffer data, int from, int to) {
+        return new String(readBytes(data, from, to), StandardCharsets.UTF_8);
+    }
+
+    static byte[] readBytes(ByteBuffer data, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        data.get(from, bytes);
+        return bytes;
+    }
+
+    private static void writePostings(DataOutputStream out, PostingsList postings) throws IOException {
+        int size = postings.size();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(postings.docId(i));
+        }
+        for (int i = 0; i < size; i++) {
+            out.writeInt(postings.freq(i));
+        }
+        for (int i = 0; i <= size; i++) {
+            out.writeInt(postings.positionStart(i));
+        }
+        out.write(postings.positionBytes(), 0, postings.positionStart(size));
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(ByteBuffer data, int offset, int count) {
+        int[] values = new int[count];
+        data.slice(offset, count * Integer.BYTES).asIntBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * A single mapping (and int offsets) limit a segment file to 2 GB.
+     */
+    private static int checkedOffset(DataOutputStream out) throws IOException {
+        int written = out.size();
+        if (written == Integer.MAX_VALUE) {
+            throw new IOException("Segment file exceeds 2 GB, lower the merge factor");
+        }
+        return written;
+    }
+}
@@ -0,0 +1,244 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Combines segments into one new segment.
+ * - documents are merged by document ID and get new ordinals
+ * - postings of each term are merged by new ordinal, field by field, positions and token offsets are copied still compressed
+ * - documents marked in the "dropped" bitsets are left out (physical removal)
+ * When the sources cover disjoint ID ranges (appended or adopted segments) the merge is a plain
+ * concatenation in range order: linear in documents and postings, no k-way comparisons.
+ */
+final class SegmentMerger {
+
+    private SegmentMerger() {
+    }
+
+    /**
+     * @param sources segments to merge
+     * @param dropped per-source ordinals to leave out, list or its entries may be null
+     * @return merged segment or null when no document is left
+     */
+    static Segment merge(List<Segment> sources, List<BitSet> dropped) {
+        int sourceCount = sources.size();
+
+        // 1. Merge documents by ID and build old ordinal -> new ordinal maps
+        int[][] docMaps = new int[sourceCount][];
+        int[] cursors = new int[sourceCount];
+        int total = 0;
+        for (int s = 0; s < sourceCount; s++) {
+            docMaps[s] = new int[sources.get(s).maxDoc()];
+            Arrays.fill(docMaps[s], -1);
+            total += sources.get(s).maxDoc();
+        }
+
+        int[] docIds = new int[total];
+        String[] titles = new String[total];
+        String[] contents = new String[total];
+        int[][] docLengths = new int[Field.COUNT][total];
+        byte[][] offsets = new byte[total][];
+        int[] order = rangeOrder(sources);
+        int newOrd = 0;
+        if (order != null) {
+            // Disjoint ID ranges: documents are concatenated in range order
+            for (int s : order) {
+                Segment source = sources.get(s);
+                for (int ord = skipDropped(s, 0, sources, dropped); ord < source.maxDoc();
+                     ord = skipDropped(s, ord + 1, sources, dropped)) {
+                    copyDocument(source, ord, newOrd, docIds, titles, contents, docLengths, offsets);
+                    docMaps[s][ord] = newOrd++;
+                }
+            }
+        } else {
+            while (true) {
+                int best = -1;
+                for (int s = 0; s < sourceCount; s++) {
+                    cursors[s] = skipDropped(s, cursors[s], sources, dropped);
+                    if (cursors[s] < sources.get(s).maxDoc()
+                            && (best < 0 || sources.get(s).docId(cursors[s]) < sources.get(best).docId(cursors[best]))) {
+                        best = s;
+                    }
+                }
+                if (best < 0) break;
+
+                int ord = cursors[best]++;
+                copyDocument(sources.get(best), ord, newOrd, docIds, titles, contents, docLengths, offsets);
+                docMaps[best][ord] = newOrd;
+                newOrd++;
+            }
+        }
+        if (newOrd == 0) return null;
+
+        // 2. Merge term tables of every field and their postings
+        int[][] termIds = new int[Field.COUNT][];
+        PostingsList[][] postings = new PostingsList[Field.COUNT][];
+        for (Field field : Field.values()) {
+            int f = field.ordinal();
+            docLengths[f] = Arrays.copyOf(docLengths[f], newOrd);
+            mergeTerms(sources, field, docMaps, order, termIds, postings);
+        }
+
+        return new Segment(
+                Arrays.copyOf(docIds, newOrd),
+                Arrays.copyOf(titles, newOrd),
+                Arrays.copyOf(contents, newOrd),
+                docLengths,
+                Arrays.copyOf(offsets, newOrd),
+                termIds,
+                postings);
+    }
+
+    /**
+     * Merges the term tables of one field (all sorted by term ID) into termIds[field] / postings[field].
+     * Terms whose documents were all dropped are left out.
+     */
+    private static void mergeTerms(List<Segment> sources, Field field, int[][] docMaps, int[] order,
+                                   int[][] termIds, PostingsList[][] postings) {
+        int sourceCount = sources.size();
+        int[] termCursors = new int[sourceCount];
+        int[] mergedTermIds = new int[totalTerms(sources, field)];
+        PostingsList[] mergedPostings = new PostingsList[mergedTermIds.length];
+        int termCount = 0;
+        PostingsList[] termPostings = new PostingsList[sourceCount];
+        int[] postingCursors = new int[sourceCount];
+
+        while (true) {
+            int termId = Integer.MAX_VALUE;
+            for (int s = 0; s < sourceCount; s++) {
+                if (termCursors[s] < sources.get(s).termCount(field)) {
+                    termId = Math.min(termId, sources.get(s).termIdAt(field, termCursors[s]));
+                }
+            }
+            if (termId == Integer.MAX_VALUE) break;
+
+            for (int s = 0; s < sourceCount; s++) {
+                Segment source = sources.get(s);
+                if (termCursors[s] < source.termCount(field) && source.termIdAt(field, termCursors[s]) == termId) {
+                    termPostings[s] = source.postingsAt(field, termCursors[s]++);
+                } else {
+                    termPostings[s] = PostingsList.EMPTY;
+                }
+                postingCursors[s] = 0;
+            }
+
+            PostingsList merged = order != null
+                    ? concatPostings(termPostings, docMaps, order)
+                    : mergePostings(termPostings, postingCursors, docMaps);
+            if (!merged.isEmpty()) {
+                mergedTermIds[termCount] = termId;
+                mergedPostings[termCount] = merged;
+                termCount++;
+            }
+        }
+        termIds[field.ordinal()] = Arrays.copyOf(mergedTermIds, termCount);
+        postings[field.ordinal()] = Arrays.copyOf(mergedPostings, termCount);
+    }
+
+    /**
+     * K-way merge of one term's postings by new ordinal. Dropped documents (mapped to -1) are skipped.
+     */
+    private static PostingsList mergePostings(PostingsList[] sources, int[] cursors, int[][] docMaps) {
+        PostingsList.Builder builder = new PostingsList.Builder();
+        while (true) {
+            int best = -1;
+            int bestOrd = Integer.MAX_VALUE;
+            for (int s = 0; s < sources.length; s++) {
+                PostingsList list = sources[s];
+                while (cursors[s] < list.size() && docMaps[s][list.docId(cursors[s])] < 0) {
+                    cursors[s]++;
+                }
+                if (cursors[s] < list.size()) {
+                    int mapped = docMaps[s][list.docId(cursors[s])];
+                    if (mapped < bestOrd) {
+                        bestOrd = mapped;
+                        best = s;
+                    }
+                }
+            }
+            if (best < 0) break;
+
+            PostingsList list = sources[best];
+            int index = cursors[best]++;
+            builder.appendEncoded(bestOrd, list.freq(index), list.positionBytes(),
+                    list.positionStart(index), list.positionStart(index + 1));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Concatenation of one term's postings when the sources are in ID range order (see rangeOrder()):
+     * new ordinals grow within a source and from source to source, so nothing has to be compared.
+     */
+    private static PostingsList concatPostings(PostingsList[] sources, int[][] docMaps, int[] order) {
+        PostingsList.Builder builder = new PostingsList.Builder();
+        for (int s : order) {
+            PostingsList list = sources[s];
+            for (int index = 0; index < list.size(); index++) {
+                int mapped = docMaps[s][list.docId(index)];
+                if (mapped >= 0) {
+                    builder.appendEncoded(mapped, list.freq(index), list.positionBytes(),
+                            list.positionStart(index), list.positionStart(index + 1));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Source indexes ordered by document IDs when the ID ranges of the sources do not overlap,
+     * null when they interleave and a k-way merge is needed.
+     */
+    private static int[] rangeOrder(List<Segment> sources) {
+        Integer[] order = new Integer[sources.size()];
+        for (int s = 0; s < order.length; s++) {
+            order[s] = s;
+        }
+        // Empty sources sort first and do not take part in the overlap check
+        Arrays.sort(order, Comparator.comparingInt(s -> sources.get(s).maxDoc() == 0
+                ? Integer.MIN_VALUE : sources.get(s).docId(0)));
+
+        int previousLast = Integer.MIN_VALUE;
+        boolean first = true;
+        for (int s : order) {
+            Segment source = sources.get(s);
+            if (source.maxDoc() == 0) continue;
+            if (!first && source.docId(0) <= previousLast) return null;
+            previousLast = source.docId(source.maxDoc() - 1);
+            first = false;
+        }
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void copyDocument(Segment source, int ord, int newOrd, int[] docIds, String[] titles,
+                                     String[] contents, int[][] docLengths, byte[][] offsets) {
+        docIds[newOrd] = source.docId(ord);
+        titles[newOrd] = source.title(ord);
+        contents[newOrd] = source.content(ord);
+        for (Field field : Field.values()) {
+            docLengths[field.ordinal()][newOrd] = source.docLength(field, ord);
+        }
+        offsets[newOrd] = source.offsetBytes(ord);
+    }
+
+    private static int skipDropped(int source, int cursor, List<Segment> sources, List<BitSet> dropped) {
+        BitSet bits = dropped == null ? null : dropped.get(source);
+        if (bits == null) return cursor;
+        int maxDoc = sources.get(source).maxDoc();
+        while (cursor < maxDoc && bits.get(cursor)) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    private static int totalTerms(List<Segment> sources, Field field) {
+        int total = 0;
+        for (Segment source : sources) {
+            total += source.termCount(field);
+        }
+        return total;
+    }
+}
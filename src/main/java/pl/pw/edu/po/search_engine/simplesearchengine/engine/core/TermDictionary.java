@@ -0,0 +1,129 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+/**
+ * Assigns every distinct term a dense int ID (0, 1, 2, ...) and stores each term string once.
+ * Open addressing with linear probing over a primitive int[] slot table.
+ *
+ * Writes are synchronized, lookups are lock-free: a term becomes visible to readers
+ * only after the volatile size counter is published.
+ */
+public final class TermDictionary {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private volatile int size;
+
+    /**
+     * Returns ID of the term, adding it to the dictionary when missing.
+     */
+    public synchronized int getOrAdd(String term) {
+        Table current = table;
+        int slot = current.slotOf(term, size);
+        int existing = current.slots[slot];
+        if (existing != 0) {
+            return existing - 1;
+        }
+
+        int id = size;
+        if (id + 1 > current.maxSize()) {
+            current = grow(current, id);
+            slot = current.slotOf(term, id);
+        }
+        current.terms[id] = term;
+        current.slots[slot] = id + 1;
+        // Volatile write publishes the new term to lock-free readers
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * Returns ID of the term or NOT_FOUND.
+     */
+    public int lookup(String term) {
+        if (term == null) return NOT_FOUND;
+        Table current = table;
+        // Read size after table: every ID below it is fully written into this table
+        int visibleSize = size;
+        int id = current.slots[current.slotOf(term, visibleSize)] - 1;
+        return id >= 0 && id < visibleSize ? id : NOT_FOUND;
+    }
+
+    /**
+     * Returns term string for given ID.
+     */
+    public String term(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Unknown term ID: " + id);
+        }
+        return table.terms[id];
+    }
+
+    /**
+     * Number of distinct terms.
+     */
+    public int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    private Table grow(Table current, int count) {
+        Table bigger = new Table(current.slots.length * 2);
+        for (int id = 0; id < count; id++) {
+            String term = current.terms[id];
+            bigger.terms[id] = term;
+            bigger.slots[bigger.slotOf(term, id)] = id + 1;
+        }
+        table = bigger;
+        return bigger;
+    }
+
+    private static final class Table {
+        // slot -> term ID + 1 (0 means empty)
+        final int[] slots;
+        // term ID -> term
+        final String[] terms;
+        final int mask;
+
+        Table(int capacity) {
+            this.slots = new int[capacity];
+            this.terms = new String[maxSize(capacity)];
+            this.mask = capacity - 1;
+        }
+
+        int maxSize() {
+            return terms.length;
+        }
+
+        /**
+         * Finds slot holding the term, or the empty slot where it would be inserted.
+         * Probing stops at IDs that are not published yet (id >= visibleSize):
+         * such slots were filled after the searched term could have been inserted.
+         */
+        int slotOf(String term, int visibleSize) {
+            int slot = spread(term.hashCode()) & mask;
+            while (true) {
+                int id = slots[slot] - 1;
+                if (id < 0 || id >= visibleSize || term.equals(terms[id])) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private static int maxSize(int capacity) {
+            // Keep load factor below 0.6 so probe sequences stay short
+            return (int) (capacity * 0.6);
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+/**
+ * Variable-byte encoding for non-negative ints.
+ * Each byte carries 7 bits of payload; the high bit marks the last byte of a value.
+ */
+final class VByte {
+
+    private VByte() {
+    }
+
+    /**
+     * Number of bytes needed to encode the value.
+     */
+    static int size(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes value at offset. Buffer must have at least size(value) bytes left.
+     *
+     * @return offset right after the written value
+     */
+    static int write(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) (value & 0x7F);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) (value | 0x80);
+        return offset;
+    }
+
+    /**
+     * Reads value that starts at offset.
+     * Returns the decoded value in the low 32 bits and the next offset in the high 32 bits,
+     * so callers can decode without allocating.
+     */
+    static long read(byte[] buffer, int offset) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[offset++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) == 0);
+        return ((long) offset << 32) | (value & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,83 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.query;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parsed boolean query over analyzed terms (see {@link QueryParser}).
+ * Trees are normalized by the parser: And / Or have at least two clauses, nested clauses
+ * of the same kind are flattened and Not only appears as a clause of And.
+ */
+public sealed interface Query permits Query.Term, Query.Phrase, Query.Near, Query.And, Query.Or, Query.Not {
+
+    /**
+     * Single analyzed (lowercased, stemmed) term.
+     */
+    record Term(String term) implements Query {
+    }
+
+    /**
+     * Terms at consecutive positions, in order (stop words are not indexed, so they are skipped on both sides).
+     */
+    record Phrase(List<String> terms) implements Query {
+        public Phrase {
+            terms = List.copyOf(terms);
+        }
+    }
+
+    /**
+     * Two terms at most distance positions apart, in any order.
+     */
+    record Near(String left, String right, int distance) implements Query {
+    }
+
+    /**
+     * Documents matching all clauses; Not clauses exclude documents.
+     */
+    record And(List<Query> clauses) implements Query {
+        public And {
+            clauses = List.copyOf(clauses);
+        }
+    }
+
+    /**
+     * Documents matching any clause.
+     */
+    record Or(List<Query> clauses) implements Query {
+        public Or {
+            clauses = List.copyOf(clauses);
+        }
+    }
+
+    /**
+     * Documents NOT matching the clause.
+     */
+    record Not(Query clause) implements Query {
+    }
+
+    /**
+     * Distinct terms that can contribute to a match (excluded terms are left out), in query order.
+     * Used for scoring boosts, matched terms and snippets.
+     */
+    default List<String> positiveTerms() {
+        Set<String> terms = new LinkedHashSet<>();
+        collectPositiveTerms(this, terms);
+        return List.copyOf(terms);
+    }
+
+    private static void collectPositiveTerms(Query query, Set<String> terms) {
+        switch (query) {
+            case Term term -> terms.add(term.term());
+            case Phrase phrase -> terms.addAll(phrase.terms());
+            case Near near -> {
+                terms.add(near.left());
+                terms.add(near.right());
+            }
+            case And and -> and.clauses().forEach(clause -> collectPositiveTerms(clause, terms));
+            case Or or -> or.clauses().forEach(clause -> collectPositiveTerms(clause, terms));
+            case Not ignored -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.query;
+
+/**
+ * Query string is not valid in the query language, e.g. unbalanced parentheses or a missing operand.
+ */
+public class QueryParseException extends RuntimeException {
+    public QueryParseException(String message) {
+        super(message);
+    }
+}
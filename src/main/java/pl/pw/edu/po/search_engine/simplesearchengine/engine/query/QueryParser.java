@@ -0,0 +1,259 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.query;
+
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis.TextPreprocessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the user query language into a {@link Query} tree:
+ * <pre>
+ * java AND (spring OR jakarta) NOT legacy
+ * "spring boot" OR (jpa NEAR/3 hibernate)
+ * </pre>
+ * - AND, OR, NOT, NEAR/n are operators only when written in upper case; NEAR binds tightest,
+ *   then NOT, AND and OR
+ * - quoted text is a phrase: its terms must appear at consecutive positions
+ * - a NEAR/n b: single words a and b at most n positions apart
+ * - adjacent clauses without an operator are joined with the default operator, except NOT: it always
+ *   excludes from the preceding clause ("a NOT b" is a AND NOT b, also when the default is OR)
+ * - parentheses group clauses
+ * - every word goes through the {@link TextPreprocessor}, the same analysis as indexed documents;
+ *   stop words disappear (with the clause they formed) and a word split into several tokens
+ *   ("e-mail") becomes a phrase
+ * Purely negative clauses (e.g. "NOT java") match nothing.
+ */
+public class QueryParser {
+
+    public enum Operator {
+        AND, OR
+    }
+
+    private static final String LEFT_PAREN = "(";
+    private static final String RIGHT_PAREN = ")";
+    // lexer marks quoted text with a leading quote
+    private static final char QUOTE = '"';
+    private static final Pattern NEAR = Pattern.compile("NEAR/(\\d{1,4})");
+
+    private final TextPreprocessor textPreprocessor;
+
+    public QueryParser(TextPreprocessor textPreprocessor) {
+        this.textPreprocessor = textPreprocessor;
+    }
+
+    /**
+     * @param defaultOperator operator joining adjacent clauses
+     * @return query tree, or null when nothing searchable is left (blank query, only stop words)
+     * @throws QueryParseException when the query is malformed
+     */
+    public Query parse(String queryString, Operator defaultOperator) {
+        if (queryString == null || queryString.isBlank()) return null;
+
+        Parser parser = new Parser(lex(queryString), defaultOperator);
+        Query query = parser.parseOr();
+        if (parser.hasNext()) {
+            throw new QueryParseException("Unexpected '" + parser.peek() + "' at token " + (parser.position + 1));
+        }
+        return query instanceof Query.Not ? new Query.And(List.of(query)) : query;
+    }
+
+    /**
+     * Splits on whitespace, parentheses are tokens of their own, quoted text is one token.
+     */
+    private static List<String> lex(String queryString) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < queryString.length(); i++) {
+            char c = queryString.charAt(i);
+            if (c == QUOTE) {
+                int end = queryString.indexOf(QUOTE, i + 1);
+                if (end < 0) {
+                    throw new QueryParseException("Missing closing quote");
+                }
+                if (!word.isEmpty()) {
+                    tokens.add(word.toString());
+                    word.setLength(0);
+                }
+                tokens.add(queryString.substring(i, end));
+                i = end;
+            } else if (Character.isWhitespace(c) || c == '(' || c == ')') {
+                if (!word.isEmpty()) {
+                    tokens.add(word.toString());
+                    word.setLength(0);
+                }
+                if (c == '(' || c == ')') {
+                    tokens.add(String.valueOf(c));
+                }
+            } else {
+                word.append(c);
+            }
+        }
+        if (!word.isEmpty()) {
+            tokens.add(word.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Recursive descent over the token list; parse methods return null for clauses without searchable terms.
+     */
+    private final class Parser {
+        private final List<String> tokens;
+        private final Operator defaultOperator;
+        private int position;
+
+        Parser(List<String> tokens, Operator defaultOperator) {
+            this.tokens = tokens;
+            this.defaultOperator = defaultOperator;
+        }
+
+        Query parseOr() {
+            List<Query> clauses = new ArrayList<>();
+            clauses.add(parseAnd());
+            while (hasNext()) {
+                if (peek().equals("OR")) {
+                    position++;
+                } else if (defaultOperator != Operator.OR || !startsClause()) {
+                    break;
+                }
+                clauses.add(parseAnd());
+            }
+            return or(clauses);
+        }
+
+        Query parseAnd() {
+            List<Query> clauses = new ArrayList<>();
+            clauses.add(parseUnary());
+            while (hasNext()) {
+                if (peek().equals("AND")) {
+                    position++;
+                } else if (!peek().equals("NOT") && (defaultOperator != Operator.AND || !startsClause())) {
+                    break;
+                }
+                clauses.add(parseUnary());
+            }
+            return and(clauses);
+        }
+
+        Query parseUnary() {
+            if (hasNext() && peek().equals("NOT")) {
+                position++;
+                Query clause = parseUnary();
+                return clause == null ? null : new Query.Not(clause);
+            }
+            return parseNear();
+        }
+
+        /**
+         * a NEAR/2 b NEAR/3 c is (a NEAR/2 b) AND (b NEAR/3 c).
+         */
+        Query parseNear() {
+            Query left = parsePrimary();
+            // operand left when stop words removed every proximity pair
+            Query single = left;
+            List<Query> clauses = new ArrayList<>();
+            Matcher near;
+            while (hasNext() && (near = NEAR.matcher(peek())).matches()) {
+                position++;
+                Query right = parsePrimary();
+                if (single == null) single = right;
+                if (left != null && right != null) {
+                    if (!(left instanceof Query.Term leftTerm) || !(right instanceof Query.Term rightTerm)) {
+                        throw new QueryParseException("NEAR operands must be single words");
+                    }
+                    clauses.add(new Query.Near(leftTerm.term(), rightTerm.term(), Integer.parseInt(near.group(1))));
+                }
+                left = right;
+            }
+            return clauses.isEmpty() ? single : and(clauses);
+        }
+
+        Query parsePrimary() {
+            if (!hasNext()) {
+                throw new QueryParseException("Unexpected end of query, a term or '(' is missing");
+            }
+            String token = tokens.get(position++);
+            if (token.equals(LEFT_PAREN)) {
+                Query query = parseOr();
+                if (!hasNext() || !peek().equals(RIGHT_PAREN)) {
+                    throw new QueryParseException("Missing ')'");
+                }
+                position++;
+                return query;
+            }
+            if (token.equals(RIGHT_PAREN) || isOperator(token)) {
+                throw new QueryParseException("Unexpected '" + token + "' at token " + position);
+            }
+            if (token.charAt(0) == QUOTE) {
+                return phrase(token.substring(1));
+            }
+            return phrase(token);
+        }
+
+        boolean hasNext() {
+            return position < tokens.size();
+        }
+
+        String peek() {
+            return tokens.get(position);
+        }
+
+        /**
+         * Whether the next token begins a clause (implicit operator between two clauses).
+         */
+        boolean startsClause() {
+            String token = peek();
+            return token.equals(LEFT_PAREN) || token.equals("NOT") || (!token.equals(RIGHT_PAREN) && !isOperator(token));
+        }
+    }
+
+    /**
+     * Analyzed word or quoted text: null without terms, Term for one term, Phrase otherwise.
+     */
+    private Query phrase(String text) {
+        List<String> terms = textPreprocessor.process(text);
+        if (terms.isEmpty()) return null;
+        return terms.size() == 1 ? new Query.Term(terms.get(0)) : new Query.Phrase(terms);
+    }
+
+    private static boolean isOperator(String token) {
+        return token.equals("AND") || token.equals("OR") || token.equals("NOT") || NEAR.matcher(token).matches();
+    }
+
+    /**
+     * Drops empty clauses, flattens nested And, unwraps a single clause.
+     */
+    private static Query and(List<Query> clauses) {
+        List<Query> flat = new ArrayList<>(clauses.size());
+        for (Query clause : clauses) {
+            if (clause instanceof Query.And and) {
+                flat.addAll(and.clauses());
+            } else if (clause != null) {
+                flat.add(clause);
+            }
+        }
+        if (flat.isEmpty()) return null;
+        return flat.size() == 1 ? flat.get(0) : new Query.And(flat);
+    }
+
+    /**
+     * Drops empty clauses, flattens nested Or, unwraps a single clause. Negations become
+     * single-clause conjunctions so Not never appears outside And.
+     */
+    private static Query or(List<Query> clauses) {
+        List<Query> flat = new ArrayList<>(clauses.size());
+        for (Query clause : clauses) {
+            if (clause instanceof Query.Or or) {
+                flat.addAll(or.clauses());
+            } else if (clause != null) {
+                flat.add(clause);
+            }
+        }
+        if (flat.isEmpty()) return null;
+        if (flat.size() == 1) return flat.get(0);
+        flat.replaceAll(clause -> clause instanceof Query.Not ? new Query.And(List.of(clause)) : clause);
+        return new Query.Or(flat);
+    }
+}
@@ -0,0 +1,56 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Field;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+
+/**
+ * Okapi BM25.
+ * score = idf * freq * (k1 + 1) / (freq + k1 * (1 - b + b * docLength / avgDocLength))
+ * idf   = ln(1 + (N - df + 0.5) / (df + 0.5))
+ * - k1 controls term frequency saturation
+ * - b controls document length normalization (0 = none, 1 = full)
+ * Document frequency and average length are those of the scored field. N counts deleted documents
+ * like df does, otherwise df could exceed N after updates and turn the idf negative.
+ */
+public final class BM25Similarity implements Similarity {
+
+    public static final double DEFAULT_K1 = 1.2;
+    public static final double DEFAULT_B = 0.75;
+
+    private final double k1;
+    private final double b;
+
+    public BM25Similarity() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    public BM25Similarity(double k1, double b) {
+        if (k1 < 0 || Double.isNaN(k1)) {
+            throw new IllegalArgumentException("k1 must be non-negative: " + k1);
+        }
+        if (b < 0 || b > 1 || Double.isNaN(b)) {
+            throw new IllegalArgumentException("b must be between 0 and 1: " + b);
+        }
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    @Override
+    public TermScorer scorer(IndexSnapshot snapshot, Field field, int termId) {
+        long docCount = Math.max(1, snapshot.maxDoc());
+        long docFreq = Math.max(1, snapshot.docFreq(field, termId));
+        double idf = Math.log(1.0 + (docCount - docFreq + 0.5) / (docFreq + 0.5));
+        double avgDocLength = snapshot.averageDocLength(field) > 0 ? snapshot.averageDocLength(field) : 1.0;
+
+        // Fold all per-query constants so a document costs two multiplications and one division
+        double weight = idf * (k1 + 1);
+        double constantNorm = k1 * (1 - b);
+        double lengthNorm = k1 * b / avgDocLength;
+        return (freq, docLength) -> weight * freq / (freq + constantNorm + lengthNorm * docLength);
+    }
+
+    @Override
+    public String toString() {
+        return "BM25(k1=" + k1 + ", b=" + b + ")";
+    }
+}
@@ -0,0 +1,72 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsIterator;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Intersection of postings iterators, visiting documents present in ALL of them.
+ * The rarest list (lowest cost) leads; every other iterator gallops to the lead's candidate with
+ * exponential search and an overshoot becomes the next candidate. Nothing is allocated per document,
+ * and the sub-iterators stay positioned on the matching document, so callers can read their
+ * frequencies and positions (scoring, phrase matching).
+ */
+public final class ConjunctionIterator {
+
+    private final PostingsIterator lead;
+    // ascending cost, the rarest ones reject candidates first
+    private final PostingsIterator[] others;
+    private int docId = -1;
+
+    public ConjunctionIterator(PostingsIterator... iterators) {
+        if (iterators.length == 0) {
+            throw new IllegalArgumentException("At least one iterator is required");
+        }
+        PostingsIterator[] sorted = iterators.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(PostingsIterator::cost));
+        this.lead = sorted[0];
+        this.others = Arrays.copyOfRange(sorted, 1, sorted.length);
+    }
+
+    /**
+     * Current document, -1 before the first call to nextDoc/advance.
+     */
+    public int docId() {
+        return docId;
+    }
+
+    /**
+     * @return next document present in all iterators or NO_MORE_DOCS
+     */
+    public int nextDoc() {
+        return docId = align(lead.nextDoc());
+    }
+
+    /**
+     * @return first document greater than or equal to target present in all iterators, or NO_MORE_DOCS
+     */
+    public int advance(int target) {
+        return docId = align(lead.advance(target));
+    }
+
+    /**
+     * Upper bound of the number of matches - the size of the rarest list.
+     */
+    public int cost() {
+        return lead.cost();
+    }
+
+    private int align(int candidate) {
+        while (candidate != PostingsIterator.NO_MORE_DOCS) {
+            int next = candidate;
+            for (PostingsIterator other : others) {
+                next = other.advance(candidate);
+                if (next != candidate) break;
+            }
+            if (next == candidate) return candidate;
+            candidate = lead.advance(next);
+        }
+        return PostingsIterator.NO_MORE_DOCS;
+    }
+}
@@ -0,0 +1,301 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.BlockMaxima;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Field;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsIterator;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsList;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Segment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Document-at-a-time query evaluation.
+ * One postings iterator per query term and searched field is advanced in ordinal order; a document is
+ * scored as soon as all iterators are aligned on it and handed to a {@link TopKCollector}.
+ * A term matches a document when it occurs in any searched field, its score is the sum of the boosted
+ * field scores (see {@link FieldBoosts}).
+ * Conjunctions are led by the rarest term, the other terms gallop to its candidates.
+ * No per-document lookups into postings lists are needed.
+ * Disjunctions use Block-Max WAND over (term, field) cursors: documents whose score upper bound cannot
+ * beat the current top-k threshold are skipped without being scored.
+ */
+public final class DaatEvaluator {
+
+    private final Similarity similarity;
+    private final FieldBoosts boosts;
+    // fields with a positive boost
+    private final Field[] fields;
+
+    /**
+     * Searches the content only.
+     */
+    public DaatEvaluator(Similarity similarity) {
+        this(similarity, FieldBoosts.CONTENT_ONLY);
+    }
+
+    public DaatEvaluator(Similarity similarity, FieldBoosts boosts) {
+        this.similarity = similarity;
+        this.boosts = boosts;
+        this.fields = Arrays.stream(Field.values()).filter(field -> boosts.boost(field) > 0).toArray(Field[]::new);
+    }
+
+    /**
+     * Collects live documents containing ALL terms; hits report term t as matched-term bit t.
+     *
+     * @param termIds distinct term IDs of the query
+     */
+    public void conjunction(IndexSnapshot snapshot, int[] termIds, TopKCollector collector) {
+        conjunction(snapshot, termIds, termMasks(termIds.length), collector);
+    }
+
+    /**
+     * @param termMasks matched-term bit reported for each term (see TopKCollector.termMask)
+     */
+    public void conjunction(IndexSnapshot snapshot, int[] termIds, long[] termMasks, TopKCollector collector) {
+        if (termIds.length == 0) return;
+
+        Similarity.TermScorer[][] scorers = scorers(snapshot, termIds);
+        MatchIterator[] iterators = new MatchIterator[termIds.length];
+        List<MatchIterator> perField = new ArrayList<>(fields.length);
+        segments:
+        for (Segment segment : snapshot.segments()) {
+            for (int t = 0; t < termIds.length; t++) {
+                perField.clear();
+                for (int f = 0; f < fields.length; f++) {
+                    PostingsList postings = segment.postings(fields[f], termIds[t]);
+                    if (!postings.isEmpty()) {
+                        perField.add(new MatchIterator.Term(postings.iterator(), scorers[t][f], segment, fields[f],
+                                termMasks[t]));
+                    }
+                }
+                iterators[t] = MatchIterator.anyOf(perField);
+                // A term missing from the segment empties the intersection
+                if (iterators[t] == null) continue segments;
+            }
+            conjunction(segment, iterators, collector);
+        }
+    }
+
+    private static void conjunction(Segment segment, MatchIterator[] iterators, TopKCollector collector) {
+        // Rarest term leads, the others gallop to its candidates
+        MatchIterator conjunction = iterators.length == 1 ? iterators[0] : new MatchIterator.And(iterators, null);
+
+        for (int ord = conjunction.nextDoc(); ord != PostingsIterator.NO_MORE_DOCS; ord = conjunction.nextDoc()) {
+            if (segment.isDeleted(ord)) continue;
+
+            double score = conjunction.score();
+            if (score > 0) {
+                collector.collect(segment.docId(ord), score, conjunction.matchedTerms());
+            }
+        }
+    }
+
+    /**
+     * Collects the best live documents containing ANY of the terms (Block-Max WAND).
+     * Only the top k of the collector are exact; once its heap is full, documents that provably cannot
+     * enter it are skipped and the collector's total hit count becomes a lower bound.
+     *
+     * @param termIds distinct term IDs of the query
+     */
+    public void disjunction(IndexSnapshot snapshot, int[] termIds, TopKCollector collector) {
+        disjunction(snapshot, termIds, termMasks(termIds.length), collector);
+    }
+
+    /**
+     * @param termMasks matched-term bit reported for each term (see TopKCollector.termMask)
+     */
+    public void disjunction(IndexSnapshot snapshot, int[] termIds, long[] termMasks, TopKCollector collector) {
+        if (termIds.length == 0) return;
+
+        Similarity.TermScorer[][] scorers = scorers(snapshot, termIds);
+        for (Segment segment : snapshot.segments()) {
+            TermCursor[] cursors = new TermCursor[termIds.length * fields.length];
+            int size = 0;
+            for (int t = 0; t < termIds.length; t++) {
+                for (int f = 0; f < fields.length; f++) {
+                    BlockMaxima maxima = segment.blockMaxima(fields[f], termIds[t]);
+                    if (maxima.blockCount() == 0) continue;
+                    cursors[size++] = new TermCursor(segment.postings(fields[f], termIds[t]).iterator(),
+                            scorers[t][f], maxima, fields[f], termMasks[t]);
+                }
+            }
+            if (size > 0) {
+                blockMaxWand(segment, cursors, size, collector);
+            }
+        }
+    }
+
+    private static void blockMaxWand(Segment segment, TermCursor[] cursors, int size, TopKCollector collector) {
+        for (int i = 0; i < size; i++) {
+            cursors[i].iterator.nextDoc();
+        }
+
+        while (true) {
+            sortByDoc(cursors, size);
+            double threshold = collector.minCompetitiveScore();
+
+            // Pivot: first cursor at which the summed term upper bounds can reach the threshold
+            int pivot = -1;
+            double bound = 0.0;
+            for (int i = 0; i < size && cursors[i].doc() != PostingsIterator.NO_MORE_DOCS; i++) {
+                bound += cursors[i].maxScore;
+                if (bound >= threshold) {
+                    pivot = i;
+                    break;
+                }
+            }
+            if (pivot < 0) {
+                if (size > 0 && cursors[0].doc() != PostingsIterator.NO_MORE_DOCS) {
+                    collector.skippedNonCompetitiveHits();
+                }
+                return;
+            }
+            int pivotDoc = cursors[pivot].doc();
+            while (pivot + 1 < size && cursors[pivot + 1].doc() == pivotDoc) {
+                pivot++;
+            }
+
+            // Block-max check: tighter bound from the blocks that contain the pivot document
+            double blockBound = 0.0;
+            for (int i = 0; i <= pivot; i++) {
+                blockBound += cursors[i].blockMaxScore(pivotDoc);
+            }
+            if (blockBound < threshold) {
+                // Nothing up to the end of the shortest current block can compete
+                int next = pivot + 1 < size ? cursors[pivot + 1].doc() : PostingsIterator.NO_MORE_DOCS;
+                for (int i = 0; i <= pivot; i++) {
+                    next = Math.min(next, cursors[i].blockLastDoc() + 1);
+                }
+                cursors[strongest(cursors, pivot)].iterator.advance(next);
+                collector.skippedNonCompetitiveHits();
+                continue;
+            }
+
+            if (cursors[0].doc() == pivotDoc) {
+                // All cursors up to the pivot are aligned: score the document fully
+                if (!segment.isDeleted(pivotDoc)) {
+                    double score = 0.0;
+                    long matched = 0L;
+                    for (int i = 0; i <= pivot; i++) {
+                        TermCursor cursor = cursors[i];
+                        score += cursor.scorer.score(cursor.iterator.freq(), segment.docLength(cursor.field, pivotDoc));
+                        matched |= cursor.termMask;
+                    }
+                    if (score > 0) {
+                        collector.collect(segment.docId(pivotDoc), score, matched);
+                    }
+                }
+                for (int i = 0; i <= pivot; i++) {
+                    cursors[i].iterator.nextDoc();
+                }
+            } else {
+                // Documents before the pivot cannot compete: move a lagging cursor straight to the pivot
+                int lagging = -1;
+                for (int i = 0; i < pivot && cursors[i].doc() < pivotDoc; i++) {
+                    if (lagging < 0 || cursors[i].maxScore > cursors[lagging].maxScore) {
+                        lagging = i;
+                    }
+                }
+                cursors[lagging].iterator.advance(pivotDoc);
+                collector.skippedNonCompetitiveHits();
+            }
+        }
+    }
+
+    private static long[] termMasks(int termCount) {
+        long[] masks = new long[termCount];
+        for (int t = 0; t < termCount; t++) {
+            masks[t] = TopKCollector.termMask(t);
+        }
+        return masks;
+    }
+
+    /**
+     * Boosted scorers per query term and searched field.
+     */
+    private Similarity.TermScorer[][] scorers(IndexSnapshot snapshot, int[] termIds) {
+        Similarity.TermScorer[][] scorers = new Similarity.TermScorer[termIds.length][fields.length];
+        for (int t = 0; t < termIds.length; t++) {
+            for (int f = 0; f < fields.length; f++) {
+                scorers[t][f] = boosts.scorer(similarity, snapshot, fields[f], termIds[t]);
+            }
+        }
+        return scorers;
+    }
+
+    /**
+     * Cursor among the first ones (up to and including last) with the highest term upper bound.
+     */
+    private static int strongest(TermCursor[] cursors, int last) {
+        int best = 0;
+        for (int i = 1; i <= last; i++) {
+            if (cursors[i].maxScore > cursors[best].maxScore) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Insertion sort by current document - there are only a handful of query terms
+     * and the order barely changes between iterations.
+     */
+    private static void sortByDoc(TermCursor[] cursors, int size) {
+        for (int i = 1; i < size; i++) {
+            TermCursor cursor = cursors[i];
+            int j = i - 1;
+            while (j >= 0 && cursors[j].doc() > cursor.doc()) {
+                cursors[j + 1] = cursors[j];
+                j--;
+            }
+            cursors[j + 1] = cursor;
+        }
+    }
+
+    /**
+     * Postings iterator of one term in one field together with its score bounds.
+     */
+    private static final class TermCursor {
+        final PostingsIterator iterator;
+        final Similarity.TermScorer scorer;
+        final BlockMaxima maxima;
+        final Field field;
+        final long termMask;
+        // upper bound of the term score over the whole segment
+        final double maxScore;
+        private int block;
+
+        TermCursor(PostingsIterator iterator, Similarity.TermScorer scorer, BlockMaxima maxima, Field field,
+                   long termMask) {
+            this.iterator = iterator;
+            this.scorer = scorer;
+            this.maxima = maxima;
+            this.field = field;
+            this.termMask = termMask;
+            this.maxScore = scorer.score(maxima.maxFreq(), maxima.minDocLength());
+        }
+
+        int doc() {
+            return iterator.docId();
+        }
+
+        /**
+         * Upper bound of the term score in the block that may contain the ordinal (targets never decrease).
+         */
+        double blockMaxScore(int ord) {
+            block = maxima.block(ord, block);
+            if (block == maxima.blockCount()) return 0.0;
+            return scorer.score(maxima.maxFreq(block), maxima.minDocLength(block));
+        }
+
+        /**
+         * Last ordinal of the block selected by the last blockMaxScore call.
+         */
+        int blockLastDoc() {
+            return block == maxima.blockCount() ? PostingsIterator.NO_MORE_DOCS - 1 : maxima.lastDoc(block);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Field;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+
+/**
+ * Query-time weights of the indexed fields.
+ * The score of a query term in a document is the sum over fields of boost * field score, where each
+ * field is scored with its own statistics and lengths (a two-word title match is not diluted by a long body).
+ * A field with boost 0 is not searched at all.
+ */
+public record FieldBoosts(double title, double content, double url) {
+
+    public static final FieldBoosts CONTENT_ONLY = new FieldBoosts(0.0, 1.0, 0.0);
+
+    public FieldBoosts {
+        for (double boost : new double[]{title, content, url}) {
+            if (boost < 0 || Double.isNaN(boost) || Double.isInfinite(boost)) {
+                throw new IllegalArgumentException("Field boosts must be finite and non-negative: " + boost);
+            }
+        }
+    }
+
+    public double boost(Field field) {
+        return switch (field) {
+            case TITLE -> title;
+            case CONTENT -> content;
+            case URL -> url;
+        };
+    }
+
+    /**
+     * Boosted scorer of the term in the field, null when the field is not searched.
+     * Multiplying by a non-negative constant keeps the scorer monotone, so pruning bounds stay valid.
+     */
+    Similarity.TermScorer scorer(Similarity similarity, IndexSnapshot snapshot, Field field, int termId) {
+        double boost = boost(field);
+        if (boost == 0.0) return null;
+
+        Similarity.TermScorer scorer = similarity.scorer(snapshot, field, termId);
+        if (boost == 1.0) return scorer;
+        return (freq, docLength) -> boost * scorer.score(freq, docLength);
+    }
+}
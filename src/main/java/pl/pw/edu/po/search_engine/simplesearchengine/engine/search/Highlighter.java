@@ -0,0 +1,148 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import java.util.List;
+
+/**
+ * Builds result snippets from indexed character offsets of the matched terms.
+ * The best passage is the window of at most maxLength characters covering the most distinct query
+ * terms (then the most occurrences, then the earliest); matches inside it are wrapped in &lt;em&gt;.
+ * Only the passage itself is copied and HTML-escaped, so the cost follows the snippet size and
+ * the number of matches, not the document size.
+ */
+public final class Highlighter {
+
+    public static final String PRE_TAG = "<em>";
+    public static final String POST_TAG = "</em>";
+    private static final String ELLIPSIS = "...";
+
+    // characters of context kept in front of the first match of the passage
+    private static final int LEADING_CONTEXT = 50;
+    // how far passage borders may move to land on a word boundary
+    private static final int BOUNDARY_SCAN = 15;
+
+    private Highlighter() {
+    }
+
+    /**
+     * Occurrence of a query term in the content.
+     *
+     * @param start first character
+     * @param end character after the last one
+     * @param term index of the query term (distinct terms score a passage higher)
+     */
+    public record Match(int start, int end, int term) {
+    }
+
+    /**
+     * @param matches occurrences sorted by start, not overlapping
+     */
+    public static String snippet(String content, List<Match> matches, int maxLength) {
+        if (content == null || content.isEmpty()) return "";
+
+        if (matches.isEmpty()) {
+            return escape(content, 0, Math.min(maxLength, content.length())) + ELLIPSIS;
+        }
+
+        // 1. Best window of matches: [first, last] fitting into maxLength
+        int bestFirst = 0;
+        int bestLast = 0;
+        int bestTerms = -1;
+        int bestCount = -1;
+        int last = 0;
+        for (int first = 0; first < matches.size(); first++) {
+            last = Math.max(last, first);
+            while (last + 1 < matches.size() && matches.get(last + 1).end() - matches.get(first).start() <= maxLength) {
+                last++;
+            }
+            int terms = distinctTerms(matches, first, last);
+            int count = last - first + 1;
+            if (terms > bestTerms || (terms == bestTerms && count > bestCount)) {
+                bestFirst = first;
+                bestLast = last;
+                bestTerms = terms;
+                bestCount = count;
+            }
+        }
+
+        // 2. Passage around the window: some leading context, the rest after, borders on word boundaries
+        int windowStart = matches.get(bestFirst).start();
+        int windowEnd = matches.get(bestLast).end();
+        int slack = Math.max(0, maxLength - (windowEnd - windowStart));
+        int start = Math.max(0, windowStart - Math.min(LEADING_CONTEXT, slack));
+        int end = Math.min(content.length(), Math.max(windowEnd, start + maxLength));
+        start = wordStart(content, start, windowStart);
+        end = wordEnd(content, end, windowEnd);
+
+        // 3. Copy the passage, wrapping every match that lies completely inside it
+        StringBuilder snippet = new StringBuilder(end - start + 32);
+        if (start > 0) snippet.append(ELLIPSIS);
+        int copied = start;
+        for (Match match : matches) {
+            if (match.start() < start) continue;
+            if (match.end() > end) break;
+            snippet.append(escape(content, copied, match.start()))
+                    .append(PRE_TAG)
+                    .append(escape(content, match.start(), match.end()))
+                    .append(POST_TAG);
+            copied = match.end();
+        }
+        snippet.append(escape(content, copied, end));
+        if (end < content.length()) snippet.append(ELLIPSIS);
+        return snippet.toString();
+    }
+
+    private static int distinctTerms(List<Match> matches, int first, int last) {
+        // query terms past 63 count as one
+        long seen = 0;
+        for (int i = first; i <= last; i++) {
+            seen |= 1L << Math.min(matches.get(i).term(), 63);
+        }
+        return Long.bitCount(seen);
+    }
+
+    /**
+     * Moves start forward to the beginning of a word, never past limit.
+     */
+    private static int wordStart(String content, int start, int limit) {
+        if (start == 0 || Character.isWhitespace(content.charAt(start - 1))) return start;
+        for (int i = start; i < Math.min(limit, start + BOUNDARY_SCAN); i++) {
+            if (Character.isWhitespace(content.charAt(i))) return i + 1;
+        }
+        return start;
+    }
+
+    /**
+     * Moves end back to the end of a word, never before limit.
+     */
+    private static int wordEnd(String content, int end, int limit) {
+        if (end == content.length() || Character.isWhitespace(content.charAt(end))) return end;
+        for (int i = end - 1; i > Math.max(limit, end - BOUNDARY_SCAN); i--) {
+            if (Character.isWhitespace(content.charAt(i))) return i;
+        }
+        return end;
+    }
+
+    private static String escape(String content, int from, int to) {
+        StringBuilder escaped = null;
+        for (int i = from; i < to; i++) {
+            String replacement = switch (content.charAt(i)) {
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '&' -> "&amp;";
+                case '"' -> "&quot;";
+                default -> null;
+            };
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(to - from + 16).append(content, from, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(content.charAt(i));
+                }
+            }
+        }
+        return escaped != null ? escaped.toString() : content.substring(from, to);
+    }
+}
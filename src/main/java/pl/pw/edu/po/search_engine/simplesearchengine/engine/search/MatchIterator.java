@@ -0,0 +1,407 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Field;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsIterator;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Segment;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Scoring iterator over the ordinals of one segment matching a (sub)query, built by {@link QueryEvaluator}.
+ * Same contract as {@link PostingsIterator}: docId() is -1 before the first move, NO_MORE_DOCS when exhausted.
+ * Leaves iterate the postings of one field and score with that field's document lengths.
+ */
+abstract class MatchIterator {
+
+    abstract int docId();
+
+    abstract int nextDoc();
+
+    /**
+     * Moves to the first match greater than or equal to target (never backwards).
+     */
+    abstract int advance(int target);
+
+    /**
+     * Upper bound of the number of matches, used to order clauses.
+     */
+    abstract long cost();
+
+    /**
+     * Score of the current document.
+     */
+    abstract double score();
+
+    /**
+     * Query terms matched by the current document, as TopKCollector.termMask bits.
+     */
+    abstract long matchedTerms();
+
+    /**
+     * Matches of any of the iterators (e.g. a term in several fields).
+     *
+     * @return null when the list is empty
+     */
+    static MatchIterator anyOf(List<MatchIterator> iterators) {
+        if (iterators.isEmpty()) return null;
+        return iterators.size() == 1 ? iterators.get(0) : new Or(iterators.toArray(new MatchIterator[0]));
+    }
+
+    /**
+     * Postings of a single term in one field.
+     */
+    static final class Term extends MatchIterator {
+        private final PostingsIterator postings;
+        private final Similarity.TermScorer scorer;
+        private final Segment segment;
+        private final Field field;
+        private final long termMask;
+
+        Term(PostingsIterator postings, Similarity.TermScorer scorer, Segment segment, Field field, long termMask) {
+            this.postings = postings;
+            this.scorer = scorer;
+            this.segment = segment;
+            this.field = field;
+            this.termMask = termMask;
+        }
+
+        @Override
+        int docId() {
+            return postings.docId();
+        }
+
+        @Override
+        int nextDoc() {
+            return postings.nextDoc();
+        }
+
+        @Override
+        int advance(int target) {
+            return postings.advance(target);
+        }
+
+        @Override
+        long cost() {
+            return postings.cost();
+        }
+
+        @Override
+        double score() {
+            return scorer.score(postings.freq(), segment.docLength(field, postings.docId()));
+        }
+
+        @Override
+        long matchedTerms() {
+            return termMask;
+        }
+    }
+
+    /**
+     * Documents matching all required clauses and none of the excluded ordinals.
+     * The cheapest clause leads, the others gallop to its candidates.
+     */
+    static final class And extends MatchIterator {
+        private final MatchIterator lead;
+        private final MatchIterator[] others;
+        // materialized NOT clauses, null when nothing is excluded
+        private final BitSet excluded;
+        private int docId = -1;
+
+        And(MatchIterator[] required, BitSet excluded) {
+            MatchIterator[] sorted = required.clone();
+            Arrays.sort(sorted, Comparator.comparingLong(MatchIterator::cost));
+            this.lead = sorted[0];
+            this.others = Arrays.copyOfRange(sorted, 1, sorted.length);
+            this.excluded = excluded;
+        }
+
+        @Override
+        int docId() {
+            return docId;
+        }
+
+        @Override
+        int nextDoc() {
+            return docId = align(lead.nextDoc());
+        }
+
+        @Override
+        int advance(int target) {
+            return docId = align(lead.advance(target));
+        }
+
+        @Override
+        long cost() {
+            return lead.cost();
+        }
+
+        @Override
+        double score() {
+            double score = lead.score();
+            for (MatchIterator other : others) {
+                score += other.score();
+            }
+            return score;
+        }
+
+        @Override
+        long matchedTerms() {
+            long matched = lead.matchedTerms();
+            for (MatchIterator other : others) {
+                matched |= other.matchedTerms();
+            }
+            return matched;
+        }
+
+        private int align(int candidate) {
+            while (candidate != PostingsIterator.NO_MORE_DOCS) {
+                int next = candidate;
+                for (MatchIterator other : others) {
+                    next = other.advance(candidate);
+                    if (next != candidate) break;
+                }
+                if (next == candidate) {
+                    if (excluded == null || !excluded.get(candidate)) return candidate;
+                    next = candidate + 1;
+                }
+                candidate = lead.advance(next);
+            }
+            return PostingsIterator.NO_MORE_DOCS;
+        }
+    }
+
+    /**
+     * Documents matching any clause; the score sums the clauses positioned on the document.
+     * Clauses are scanned linearly - queries have a handful of them.
+     */
+    static final class Or extends MatchIterator {
+        private final MatchIterator[] clauses;
+        private int docId = -1;
+
+        Or(MatchIterator[] clauses) {
+            this.clauses = clauses;
+        }
+
+        @Override
+        int docId() {
+            return docId;
+        }
+
+        @Override
+        int nextDoc() {
+            return advance(docId + 1);
+        }
+
+        @Override
+        int advance(int target) {
+            int min = PostingsIterator.NO_MORE_DOCS;
+            for (MatchIterator clause : clauses) {
+                int doc = clause.docId() < target ? clause.advance(target) : clause.docId();
+                min = Math.min(min, doc);
+            }
+            return docId = min;
+        }
+
+        @Override
+        long cost() {
+            long cost = 0;
+            for (MatchIterator clause : clauses) {
+                cost += clause.cost();
+            }
+            return cost;
+        }
+
+        @Override
+        double score() {
+            double score = 0.0;
+            for (MatchIterator clause : clauses) {
+                if (clause.docId() == docId) {
+                    score += clause.score();
+                }
+            }
+            return score;
+        }
+
+        @Override
+        long matchedTerms() {
+            long matched = 0L;
+            for (MatchIterator clause : clauses) {
+                if (clause.docId() == docId) {
+                    matched |= clause.matchedTerms();
+                }
+            }
+            return matched;
+        }
+    }
+
+    /**
+     * Candidates come from the intersection of the terms' postings in one field; a candidate matches when
+     * the positions of the terms satisfy the subclass' constraint. Scored with the number of positional
+     * matches in place of the term frequencies.
+     */
+    abstract static sealed class Positional extends MatchIterator permits Phrase, Near {
+        final PostingsIterator[] postings;
+        private final Similarity.TermScorer[] scorers;
+        private final Segment segment;
+        private final Field field;
+        // a positional match contains every term
+        private final long termMask;
+        private final ConjunctionIterator conjunction;
+        // per term: positions in the current document (reused buffers) and their count
+        final int[][] positions;
+        final int[] counts;
+        private int matchFreq;
+
+        Positional(PostingsIterator[] postings, Similarity.TermScorer[] scorers, Segment segment, Field field,
+                   long termMask) {
+            this.postings = postings;
+            this.scorers = scorers;
+            this.segment = segment;
+            this.field = field;
+            this.termMask = termMask;
+            this.conjunction = new ConjunctionIterator(postings);
+            this.positions = new int[postings.length][8];
+            this.counts = new int[postings.length];
+        }
+
+        /**
+         * Number of positional matches in the document whose positions were just loaded (0 = no match).
+         */
+        abstract int matchFreq();
+
+        @Override
+        int docId() {
+            return conjunction.docId();
+        }
+
+        @Override
+        int nextDoc() {
+            return verify(conjunction.nextDoc());
+        }
+
+        @Override
+        int advance(int target) {
+            // positions of the current document are already consumed, never verify it twice
+            if (docId() >= target) return docId();
+            return verify(conjunction.advance(target));
+        }
+
+        @Override
+        long cost() {
+            return conjunction.cost();
+        }
+
+        @Override
+        double score() {
+            int docLength = segment.docLength(field, docId());
+            double score = 0.0;
+            for (Similarity.TermScorer scorer : scorers) {
+                score += scorer.score(matchFreq, docLength);
+            }
+            return score;
+        }
+
+        @Override
+        long matchedTerms() {
+            return termMask;
+        }
+
+        private int verify(int doc) {
+            while (doc != PostingsIterator.NO_MORE_DOCS) {
+                loadPositions();
+                matchFreq = matchFreq();
+                if (matchFreq > 0) return doc;
+                doc = conjunction.nextDoc();
+            }
+            return doc;
+        }
+
+        private void loadPositions() {
+            for (int t = 0; t < postings.length; t++) {
+                int freq = postings[t].freq();
+                if (positions[t].length < freq) {
+                    positions[t] = new int[Math.max(freq, 2 * positions[t].length)];
+                }
+                for (int i = 0; i < freq; i++) {
+                    positions[t][i] = postings[t].nextPosition();
+                }
+                counts[t] = freq;
+            }
+        }
+    }
+
+    /**
+     * Terms at consecutive positions in query order.
+     */
+    static final class Phrase extends Positional {
+        private final int[] cursors;
+
+        Phrase(PostingsIterator[] postings, Similarity.TermScorer[] scorers, Segment segment, Field field,
+               long termMask) {
+            super(postings, scorers, segment, field, termMask);
+            this.cursors = new int[postings.length];
+        }
+
+        @Override
+        int matchFreq() {
+            // Every position of the first term is a potential start; the other lists are walked
+            // forward only, as the starts grow
+            Arrays.fill(cursors, 0);
+            int matches = 0;
+            starts:
+            for (int i = 0; i < counts[0]; i++) {
+                int start = positions[0][i];
+                for (int t = 1; t < postings.length; t++) {
+                    int target = start + t;
+                    int[] termPositions = positions[t];
+                    int cursor = cursors[t];
+                    while (cursor < counts[t] && termPositions[cursor] < target) {
+                        cursor++;
+                    }
+                    cursors[t] = cursor;
+                    if (cursor == counts[t]) break starts;
+                    if (termPositions[cursor] != target) continue starts;
+                }
+                matches++;
+            }
+            return matches;
+        }
+    }
+
+    /**
+     * Two terms at most distance positions apart, in any order.
+     */
+    static final class Near extends Positional {
+        private final int distance;
+
+        Near(PostingsIterator left, PostingsIterator right, Similarity.TermScorer[] scorers, Segment segment,
+             Field field, long termMask, int distance) {
+            super(new PostingsIterator[]{left, right}, scorers, segment, field, termMask);
+            this.distance = distance;
+        }
+
+        @Override
+        int matchFreq() {
+            // Left positions with a right position inside [position - distance, position + distance]
+            int[] left = positions[0];
+            int[] right = positions[1];
+            int cursor = 0;
+            int matches = 0;
+            for (int i = 0; i < counts[0]; i++) {
+                while (cursor < counts[1] && right[cursor] < left[i] - distance) {
+                    cursor++;
+                }
+                if (cursor == counts[1]) break;
+                if (right[cursor] <= left[i] + distance && right[cursor] != left[i]) {
+                    matches++;
+                } else if (right[cursor] == left[i] && cursor + 1 < counts[1] && right[cursor + 1] <= left[i] + distance) {
+                    matches++;
+                }
+            }
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Field;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsIterator;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsList;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Segment;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.TermDictionary;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.query.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query planner: evaluates a boolean {@link Query} tree against a snapshot.
+ * - the tree is first simplified against the term dictionary: unknown terms empty their conjunction,
+ *   drop out of disjunctions and negations of nothing vanish, so empty clauses never touch postings
+ * - plain conjunctions / disjunctions of terms take the {@link DaatEvaluator} fast paths
+ *   (rarest-first intersection, Block-Max WAND)
+ * - any other tree becomes a {@link MatchIterator} tree per segment: conjunction clauses are led by
+ *   the one with the fewest postings, NOT clauses are materialized once into a bitset of excluded ordinals,
+ *   phrase / NEAR clauses intersect the postings first and compare positions only for common documents
+ * - every term, phrase and NEAR clause is matched in each searched field (boost above 0) and the
+ *   boosted field scores are summed; phrases and NEAR never span two fields
+ */
+public final class QueryEvaluator {
+
+    private final Similarity similarity;
+    private final FieldBoosts boosts;
+    // fields with a positive boost
+    private final List<Field> fields;
+
+    /**
+     * Searches the content only.
+     */
+    public QueryEvaluator(Similarity similarity) {
+        this(similarity, FieldBoosts.CONTENT_ONLY);
+    }
+
+    public QueryEvaluator(Similarity similarity, FieldBoosts boosts) {
+        this.similarity = similarity;
+        this.boosts = boosts;
+        this.fields = Arrays.stream(Field.values()).filter(field -> boosts.boost(field) > 0).toList();
+    }
+
+    /**
+     * Collects live documents matching the query. Every hit carries the bitmask of the query terms it
+     * matched: bit i (see TopKCollector.termMask) stands for query.positiveTerms().get(i).
+     */
+    public void evaluate(IndexSnapshot snapshot, Query query, TopKCollector collector) {
+        Query plan = simplify(snapshot, query);
+        if (plan == null) return;
+
+        Map<String, Long> masks = termMasks(query);
+        DaatEvaluator daat = new DaatEvaluator(similarity, boosts);
+        if (plan instanceof Query.Term || (plan instanceof Query.And and && onlyTerms(and.clauses()))) {
+            List<String> terms = plan instanceof Query.And and ? terms(and.clauses()) : terms(List.of(plan));
+            daat.conjunction(snapshot, termIds(snapshot, terms), masksOf(terms, masks), collector);
+        } else if (plan instanceof Query.Or or && onlyTerms(or.clauses())) {
+            List<String> terms = terms(or.clauses());
+            daat.disjunction(snapshot, termIds(snapshot, terms), masksOf(terms, masks), collector);
+        } else {
+            Map<ScorerKey, Similarity.TermScorer> scorers = new HashMap<>();
+            for (Segment segment : snapshot.segments()) {
+                MatchIterator iterator = plan(snapshot, segment, plan, scorers, masks);
+                if (iterator != null) {
+                    collect(segment, iterator, collector);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrites the query without clauses that cannot match anything in the snapshot.
+     *
+     * @return simplified query, null when the whole query matches nothing
+     */
+    static Query simplify(IndexSnapshot snapshot, Query query) {
+        return switch (query) {
+            case Query.Term term -> snapshot.termId(term.term()) == TermDictionary.NOT_FOUND ? null : term;
+            case Query.Phrase phrase -> allKnown(snapshot, phrase.terms()) ? phrase : null;
+            case Query.Near near -> allKnown(snapshot, List.of(near.left(), near.right())) ? near : null;
+            case Query.And and -> {
+                List<Query> clauses = new ArrayList<>(and.clauses().size());
+                boolean positive = false;
+                for (Query clause : and.clauses()) {
+                    Query simplified = simplify(snapshot, clause);
+                    if (clause instanceof Query.Not) {
+                        // NOT of nothing excludes nothing
+                        if (simplified != null) clauses.add(simplified);
+                    } else if (simplified == null) {
+                        yield null;
+                    } else {
+                        clauses.add(simplified);
+                        positive = true;
+                    }
+                }
+                if (!positive) yield null;
+                yield clauses.size() == 1 ? clauses.get(0) : new Query.And(clauses);
+            }
+            case Query.Or or -> {
+                List<Query> clauses = new ArrayList<>(or.clauses().size());
+                for (Query clause : or.clauses()) {
+                    Query simplified = simplify(snapshot, clause);
+                    if (simplified != null) clauses.add(simplified);
+                }
+                if (clauses.isEmpty()) yield null;
+                yield clauses.size() == 1 ? clauses.get(0) : new Query.Or(clauses);
+            }
+            case Query.Not not -> {
+                Query clause = simplify(snapshot, not.clause());
+                yield clause == null ? null : new Query.Not(clause);
+            }
+        };
+    }
+
+    /**
+     * Builds the iterator tree of one segment.
+     *
+     * @return null when nothing in the segment can match
+     */
+    private MatchIterator plan(IndexSnapshot snapshot, Segment segment, Query query,
+                               Map<ScorerKey, Similarity.TermScorer> scorers, Map<String, Long> masks) {
+        switch (query) {
+            case Query.Term term -> {
+                List<MatchIterator> matches = new ArrayList<>(fields.size());
+                for (Field field : fields) {
+                    PostingsIterator postings = postings(snapshot, segment, field, term.term());
+                    if (postings != null) {
+                        matches.add(new MatchIterator.Term(postings, scorer(snapshot, field, term.term(), scorers),
+                                segment, field, mask(term.term(), masks)));
+                    }
+                }
+                return MatchIterator.anyOf(matches);
+            }
+            case Query.Phrase phrase -> {
+                List<MatchIterator> matches = new ArrayList<>(fields.size());
+                perField:
+                for (Field field : fields) {
+                    PostingsIterator[] postings = new PostingsIterator[phrase.terms().size()];
+                    Similarity.TermScorer[] termScorers = new Similarity.TermScorer[postings.length];
+                    for (int i = 0; i < postings.length; i++) {
+                        String term = phrase.terms().get(i);
+                        postings[i] = postings(snapshot, segment, field, term);
+                        if (postings[i] == null) continue perField;
+                        termScorers[i] = scorer(snapshot, field, term, scorers);
+                    }
+                    matches.add(new MatchIterator.Phrase(postings, termScorers, segment, field,
+                            combinedMask(phrase.terms(), masks)));
+                }
+                return MatchIterator.anyOf(matches);
+            }
+            case Query.Near near -> {
+                List<MatchIterator> matches = new ArrayList<>(fields.size());
+                for (Field field : fields) {
+                    PostingsIterator left = postings(snapshot, segment, field, near.left());
+                    PostingsIterator right = postings(snapshot, segment, field, near.right());
+                    if (left == null || right == null) continue;
+                    Similarity.TermScorer[] termScorers = {
+                            scorer(snapshot, field, near.left(), scorers), scorer(snapshot, field, near.right(), scorers)};
+                    long termMask = mask(near.left(), masks) | mask(near.right(), masks);
+                    matches.add(new MatchIterator.Near(left, right, termScorers, segment, field, termMask,
+                            near.distance()));
+                }
+                return MatchIterator.anyOf(matches);
+            }
+            case Query.And and -> {
+                List<MatchIterator> required = new ArrayList<>();
+                BitSet excluded = null;
+                for (Query clause : and.clauses()) {
+                    if (clause instanceof Query.Not not) {
+                        MatchIterator negated = plan(snapshot, segment, not.clause(), scorers, masks);
+                        if (negated == null) continue;
+                        if (excluded == null) excluded = new BitSet(segment.maxDoc());
+                        for (int ord = negated.nextDoc(); ord != PostingsIterator.NO_MORE_DOCS; ord = negated.nextDoc()) {
+                            excluded.set(ord);
+                        }
+                    } else {
+                        MatchIterator iterator = plan(snapshot, segment, clause, scorers, masks);
+                        if (iterator == null) return null;
+                        required.add(iterator);
+                    }
+                }
+                if (required.isEmpty()) return null;
+                if (required.size() == 1 && excluded == null) return required.get(0);
+                return new MatchIterator.And(required.toArray(new MatchIterator[0]), excluded);
+            }
+            case Query.Or or -> {
+                List<MatchIterator> clauses = new ArrayList<>();
+                for (Query clause : or.clauses()) {
+                    MatchIterator iterator = plan(snapshot, segment, clause, scorers, masks);
+                    if (iterator != null) clauses.add(iterator);
+                }
+                return MatchIterator.anyOf(clauses);
+            }
+            case Query.Not ignored -> {
+                // Purely negative clause
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Fresh iterator over the term's postings in the field of the segment, null when the term does not occur there.
+     */
+    private static PostingsIterator postings(IndexSnapshot snapshot, Segment segment, Field field, String term) {
+        PostingsList postings = segment.postings(field, snapshot.termId(term));
+        return postings.isEmpty() ? null : postings.iterator();
+    }
+
+    private Similarity.TermScorer scorer(IndexSnapshot snapshot, Field field, String term,
+                                         Map<ScorerKey, Similarity.TermScorer> scorers) {
+        return scorers.computeIfAbsent(new ScorerKey(field, term),
+                key -> boosts.scorer(similarity, snapshot, field, snapshot.termId(term)));
+    }
+
+    private static boolean allKnown(IndexSnapshot snapshot, List<String> terms) {
+        return terms.stream().allMatch(term -> snapshot.termId(term) != TermDictionary.NOT_FOUND);
+    }
+
+    private static void collect(Segment segment, MatchIterator iterator, TopKCollector collector) {
+        for (int ord = iterator.nextDoc(); ord != PostingsIterator.NO_MORE_DOCS; ord = iterator.nextDoc()) {
+            if (segment.isDeleted(ord)) continue;
+
+            double score = iterator.score();
+            if (score > 0) {
+                collector.collect(segment.docId(ord), score, iterator.matchedTerms());
+            }
+        }
+    }
+
+    private static boolean onlyTerms(List<Query> clauses) {
+        return clauses.stream().allMatch(clause -> clause instanceof Query.Term);
+    }
+
+    private record ScorerKey(Field field, String term) {
+    }
+
+    /**
+     * Distinct terms of Term clauses, in clause order.
+     */
+    private static List<String> terms(List<Query> clauses) {
+        return clauses.stream().map(clause -> ((Query.Term) clause).term()).distinct().toList();
+    }
+
+    private static int[] termIds(IndexSnapshot snapshot, List<String> terms) {
+        return terms.stream().mapToInt(snapshot::termId).toArray();
+    }
+
+    /**
+     * Matched-term bit of every positive query term.
+     */
+    private static Map<String, Long> termMasks(Query query) {
+        List<String> terms = query.positiveTerms();
+        Map<String, Long> masks = new HashMap<>(2 * terms.size());
+        for (int i = 0; i < terms.size(); i++) {
+            masks.put(terms.get(i), TopKCollector.termMask(i));
+        }
+        return masks;
+    }
+
+    /**
+     * Bit of the term, 0 for terms that only appear negated.
+     */
+    private static long mask(String term, Map<String, Long> masks) {
+        return masks.getOrDefault(term, 0L);
+    }
+
+    private static long combinedMask(List<String> terms, Map<String, Long> masks) {
+        long mask = 0L;
+        for (String term : terms) {
+            mask |= mask(term, masks);
+        }
+        return mask;
+    }
+
+    private static long[] masksOf(List<String> terms, Map<String, Long> masks) {
+        return terms.stream().mapToLong(term -> mask(term, masks)).toArray();
+    }
+}
@@ -0,0 +1,39 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Field;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+
+/**
+ * Ranking function of the search engine.
+ * Collection statistics (document count, document frequency, average length) are read once per query
+ * term in scorer(); the returned scorer only does arithmetic per matching document.
+ * Scores must not decrease with freq and not increase with docLength: dynamic pruning uses
+ * score(maxFreq, minDocLength) of a postings block as the upper bound of every document in it.
+ */
+public interface Similarity {
+
+    /**
+     * Prepares scoring of one query term in the content.
+     */
+    default TermScorer scorer(IndexSnapshot snapshot, int termId) {
+        return scorer(snapshot, Field.CONTENT, termId);
+    }
+
+    /**
+     * Prepares scoring of one query term in a field, using the field's statistics.
+     */
+    TermScorer scorer(IndexSnapshot snapshot, Field field, int termId);
+
+    /**
+     * Per-document scoring of one query term.
+     */
+    @FunctionalInterface
+    interface TermScorer {
+
+        /**
+         * @param freq number of occurrences of the term in the document
+         * @param docLength number of tokens in the field of the document (stored at indexing time)
+         */
+        double score(int freq, int docLength);
+    }
+}
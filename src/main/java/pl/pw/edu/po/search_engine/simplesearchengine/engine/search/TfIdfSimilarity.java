@@ -0,0 +1,25 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Field;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+
+/**
+ * The original TF-IDF variant of the engine.
+ * - TF is the number of occurrences divided by the document length
+ * - IDF is the smoothed ln(1 + N / df), N and df both counting deleted documents not merged away yet
+ */
+public final class TfIdfSimilarity implements Similarity {
+
+    @Override
+    public TermScorer scorer(IndexSnapshot snapshot, Field field, int termId) {
+        int totalDocs = Math.max(1, snapshot.maxDoc());
+        int df = Math.max(1, snapshot.docFreq(field, termId));
+        double idf = Math.log(1.0 + ((double) totalDocs / (double) df));
+        return (freq, docLength) -> docLength == 0 ? 0.0 : (double) freq / docLength * idf;
+    }
+
+    @Override
+    public String toString() {
+        return "TF-IDF";
+    }
+}
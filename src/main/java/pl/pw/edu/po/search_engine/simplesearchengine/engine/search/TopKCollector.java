@@ -0,0 +1,161 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the k best scored documents in a bounded min-heap and counts all collected hits.
+ * - collect() is O(log k), hits that cannot enter the top k are rejected after one comparison
+ * - only the surviving k hits are sorted, in topDocs()
+ * Ties are broken by lower document ID so results are deterministic.
+ * Every hit carries the bitmask of query terms it matched (see {@link #termMask(int)}), filled in by the
+ * evaluators while traversing postings, so results can list matched terms without looking at the document.
+ */
+public final class TopKCollector {
+
+    private final int k;
+    // Min-heap on (score, -docId): heap root is the weakest hit kept so far
+    private final int[] docIds;
+    private final double[] scores;
+    private final long[] matchedTerms;
+    private int size;
+    private long totalHits;
+    private boolean totalHitsExact = true;
+
+    public TopKCollector(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        this.k = k;
+        this.docIds = new int[k];
+        this.scores = new double[k];
+        this.matchedTerms = new long[k];
+    }
+
+    /**
+     * Scored document.
+     *
+     * @param matchedTerms bit i set = the i-th query term occurs in the document
+     */
+    public record ScoredDoc(int docId, double score, long matchedTerms) {
+
+        public ScoredDoc(int docId, double score) {
+            this(docId, score, 0L);
+        }
+    }
+
+    /**
+     * Bit of the query term at the index (positions in Query.positiveTerms()).
+     * Only the first 64 terms are tracked, later ones get no bit.
+     */
+    public static long termMask(int termIndex) {
+        return termIndex < Long.SIZE ? 1L << termIndex : 0L;
+    }
+
+    public void collect(int docId, double score) {
+        collect(docId, score, 0L);
+    }
+
+    public void collect(int docId, double score, long matchedTerms) {
+        totalHits++;
+        if (k == 0) return;
+
+        if (size < k) {
+            docIds[size] = docId;
+            scores[size] = score;
+            this.matchedTerms[size] = matchedTerms;
+            siftUp(size++);
+        } else if (lessThan(docIds[0], scores[0], docId, score)) {
+            docIds[0] = docId;
+            scores[0] = score;
+            this.matchedTerms[0] = matchedTerms;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Number of collected hits, including the ones that did not make it into the top k.
+     */
+    public long totalHits() {
+        return totalHits;
+    }
+
+    /**
+     * False when the evaluator skipped matching documents that could not enter the top k
+     * (dynamic pruning) - totalHits() is then only a lower bound.
+     */
+    public boolean isTotalHitsExact() {
+        return totalHitsExact;
+    }
+
+    /**
+     * Called by evaluators that skip non-competitive documents without collecting them.
+     */
+    void skippedNonCompetitiveHits() {
+        totalHitsExact = false;
+    }
+
+    /**
+     * Score a new hit has to beat to enter the top k (negative infinity while the heap is not full).
+     */
+    public double minCompetitiveScore() {
+        return size < k || k == 0 ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    /**
+     * Best hits, highest score first.
+     */
+    public ScoredDoc[] topDocs() {
+        ScoredDoc[] result = new ScoredDoc[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = new ScoredDoc(docIds[i], scores[i], matchedTerms[i]);
+        }
+        Arrays.sort(result, (a, b) -> lessThan(a.docId(), a.score(), b.docId(), b.score()) ? 1
+                : lessThan(b.docId(), b.score(), a.docId(), a.score()) ? -1 : 0);
+        return result;
+    }
+
+    /**
+     * Whether hit a ranks below hit b.
+     */
+    private static boolean lessThan(int docA, double scoreA, int docB, double scoreB) {
+        return scoreA < scoreB || (scoreA == scoreB && docA > docB);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!lessThan(docIds[index], scores[index], docIds[parent], scores[parent])) break;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && lessThan(docIds[left], scores[left], docIds[smallest], scores[smallest])) {
+                smallest = left;
+            }
+            if (right < size && lessThan(docIds[right], scores[right], docIds[smallest], scores[smallest])) {
+                smallest = right;
+            }
+            if (smallest == index) return;
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int docId = docIds[a];
+        docIds[a] = docIds[b];
+        docIds[b] = docId;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        long matched = matchedTerms[a];
+        matchedTerms[a] = matchedTerms[b];
+        matchedTerms[b] = matched;
+    }
+}
@@ -1,10 +1,13 @@
 package pl.pw.edu.po.search_engine.simplesearchengine.exception;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.query.QueryParseException;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -26,6 +29,24 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(HttpStatus.CONFLICT, ex.getMessage());
     }
 
+    @ExceptionHandler(IndexingQueueFullException.class)
+    public ResponseEntity<Map<String, Object>> handleIndexingQueueFull(IndexingQueueFullException ex) {
+        log.warn("Indexing backpressure: {}", ex.getMessage());
+        return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+    }
+
+    @ExceptionHandler(QueryParseException.class)
+    public ResponseEntity<Map<String, Object>> handleQueryParse(QueryParseException ex) {
+        log.warn("Invalid query: {}", ex.getMessage());
+        return buildErrorResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
+
+    @ExceptionHandler({JsonProcessingException.class, RuntimeJsonMappingException.class})
+    public ResponseEntity<Map<String, Object>> handleMalformedJson(Exception ex) {
+        log.warn("Malformed JSON: {}", ex.getMessage());
+        return buildErrorResponse(HttpStatus.BAD_REQUEST, "Malformed JSON: " + ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGenericException(Exception ex) {
         log.error("Unexpected error: {}", ex.getMessage(), ex);
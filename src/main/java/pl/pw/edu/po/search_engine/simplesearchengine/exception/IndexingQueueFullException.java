@@ -0,0 +1,7 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.exception;
+
+public class IndexingQueueFullException extends RuntimeException {
+    public IndexingQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,81 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plain JDBC writes for bulk imports.
+ * Document IDs are IDENTITY generated, which makes Hibernate insert row by row; here the IDs of a whole
+ * batch are reserved from the column's sequence in one round trip and the rows are inserted with a single
+ * statement over arrays (unnest). Bypasses the persistence context, so inserted documents are not managed
+ * entities.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DocumentBulkRepository {
+
+    // URLs stored concurrently by someone else are skipped instead of failing the whole batch
+    private static final String INSERT = "INSERT INTO documents (id, title, content, url, created_at, updated_at) "
+            + "SELECT d.id, d.title, d.content, d.url, ?, ? FROM unnest(?, ?, ?, ?) AS d(id, title, content, url) "
+            + "ON CONFLICT (url) DO NOTHING RETURNING id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * The given URLs that are already stored, in one query.
+     */
+    public Set<String> findExistingUrls(Collection<String> urls) {
+        if (urls.isEmpty()) return Set.of();
+
+        List<String> existing = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT url FROM documents WHERE url = ANY(?)");
+            statement.setArray(1, connection.createArrayOf("text", urls.toArray()));
+            return statement;
+        }, (row, rowNum) -> row.getString(1));
+        return new HashSet<>(existing);
+    }
+
+    /**
+     * Inserts new documents in one statement, setting their IDs and timestamps.
+     *
+     * @return the inserted documents: without those whose URL was stored meanwhile
+     */
+    public List<Document> insertAll(List<Document> documents) {
+        if (documents.isEmpty()) return List.of();
+
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT nextval(pg_get_serial_sequence('documents', 'id')) FROM generate_series(1, ?)",
+                Long.class, documents.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            document.setId(ids.get(i));
+            document.setCreatedAt(now);
+            document.setUpdatedAt(now);
+        }
+
+        Set<Long> inserted = new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT);
+            statement.setTimestamp(1, Timestamp.valueOf(now));
+            statement.setTimestamp(2, Timestamp.valueOf(now));
+            statement.setArray(3, connection.createArrayOf("bigint", documents.stream().map(Document::getId).toArray()));
+            statement.setArray(4, connection.createArrayOf("varchar", documents.stream().map(Document::getTitle).toArray()));
+            statement.setArray(5, connection.createArrayOf("text", documents.stream().map(Document::getContent).toArray()));
+            statement.setArray(6, connection.createArrayOf("varchar", documents.stream().map(Document::getUrl).toArray()));
+            return statement;
+        }, (row, rowNum) -> row.getLong(1)));
+        return inserted.size() == documents.size()
+                ? documents
+                : documents.stream().filter(document -> inserted.contains(document.getId())).toList();
+    }
+}
@@ -1,12 +1,14 @@
 package pl.pw.edu.po.search_engine.simplesearchengine.repository;
 
 import org.springframework.cglib.core.Local;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,4 +30,14 @@ public interface DocumentRepository extends JpaRepository<Document, Long> {
     // Number of documents with title containing a specific keyword
     @Query("SELECT COUNT(d) FROM Document d WHERE d.title LIKE %?1%")
     long countByTitleContaining(String keyword);
+
+    // Search result page without the TEXT content (content comes from the index)
+    List<DocumentSummary> findSummariesByIdIn(Collection<Long> ids);
+
+    // Keyset pagination for the index rebuild: next page of indexed columns after the last seen ID
+    List<IndexedDocument> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // Latest modification time, used to detect a stale on-disk index
+    @Query("SELECT MAX(d.updatedAt) FROM Document d")
+    Optional<LocalDateTime> findLastUpdatedAt();
 }
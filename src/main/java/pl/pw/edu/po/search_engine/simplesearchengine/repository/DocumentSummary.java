@@ -0,0 +1,14 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lightweight projection of Document without the content column.
+ */
+public interface DocumentSummary {
+    Long getId();
+    String getTitle();
+    String getUrl();
+    LocalDateTime getCreatedAt();
+    LocalDateTime getUpdatedAt();
+}
@@ -0,0 +1,11 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.repository;
+
+/**
+ * Projection of Document with just the indexed columns, read page by page when the index is rebuilt.
+ */
+public interface IndexedDocument {
+    Long getId();
+    String getTitle();
+    String getContent();
+    String getUrl();
+}
@@ -3,15 +3,26 @@ package pl.pw.edu.po.search_engine.simplesearchengine.service;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.pw.edu.po.search_engine.simplesearchengine.dto.BulkImportResult;
 import pl.pw.edu.po.search_engine.simplesearchengine.dto.DocumentRequest;
 import pl.pw.edu.po.search_engine.simplesearchengine.exception.DocumentNotFoundException;
 import pl.pw.edu.po.search_engine.simplesearchengine.exception.DuplicateUrlException;
 import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
+import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentBulkRepository;
 import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
@@ -19,10 +30,20 @@ import java.util.List;
 public class DocumentService {
 
     private final DocumentRepository documentRepository;
-    private final IndexingService indexingService;
+    private final DocumentBulkRepository documentBulkRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Index updates are applied asynchronously after commit, see IndexingQueue
+    private final IndexingQueue indexingQueue;
+
+    @Value("${search.indexing.wait-timeout-ms:30000}")
+    private long waitTimeoutMillis;
+
+    @Value("${search.bulk.batch-size:1000}")
+    private int bulkBatchSize;
 
     /**
      * Add new document (PosgreSQL + InvertedIndex)
+     * The document becomes searchable shortly after the transaction commits, see waitUntilSearchable()
      */
     @Transactional
     public Document addDocument(DocumentRequest request) {
@@ -39,12 +60,78 @@ public class DocumentService {
         );
         Document savedDocument = documentRepository.save(document);
 
-        indexingService.addDocument(String.valueOf(savedDocument.getId()), savedDocument.getContent());
+        indexingQueue.add(String.valueOf(savedDocument.getId()), savedDocument.getTitle(),
+                savedDocument.getContent(), savedDocument.getUrl());
 
         log.info("Document added with ID={}, URL={}", savedDocument.getId(), savedDocument.getUrl());
         return savedDocument;
     }
 
+    /**
+     * Bulk import of new documents, read one by one so the whole import never has to be in memory.
+     * Every batch of search.bulk.batch-size documents is its own transaction: one query for stored URLs,
+     * one insert statement, one submission to the indexing queue. Documents whose URL is already stored
+     * (including by earlier batches, or concurrently) and documents without URL or content are skipped
+     * and counted, so an interrupted import can simply be sent again.
+     */
+    public BulkImportResult importDocuments(Iterator<DocumentRequest> requests) {
+        long startTime = System.currentTimeMillis();
+        int received = 0;
+        int created = 0;
+        int invalid = 0;
+        // URLs of the current batch; repeats in earlier batches are found as stored by the next ones
+        Set<String> batchUrls = new HashSet<>();
+        List<DocumentRequest> batch = new ArrayList<>(bulkBatchSize);
+
+        while (requests.hasNext()) {
+            DocumentRequest request = requests.next();
+            received++;
+            if (request.getUrl() == null || request.getUrl().isBlank() || request.getContent() == null) {
+                invalid++;
+            } else if (batchUrls.add(request.getUrl())) {
+                batch.add(request);
+                if (batch.size() == bulkBatchSize) {
+                    created += insertBatch(batch);
+                    batch.clear();
+                    batchUrls.clear();
+                }
+            }
+        }
+        created += insertBatch(batch);
+
+        BulkImportResult result = BulkImportResult.builder()
+                .documentsReceived(received)
+                .documentsCreated(created)
+                .duplicatesSkipped(received - invalid - created)
+                .invalidSkipped(invalid)
+                .importTimeMs(System.currentTimeMillis() - startTime)
+                .build();
+        log.info("Bulk import finished: {}", result);
+        return result;
+    }
+
+    private int insertBatch(List<DocumentRequest> batch) {
+        if (batch.isEmpty()) return 0;
+
+        Integer created = transactionTemplate.execute(status -> {
+            Set<String> existing = documentBulkRepository.findExistingUrls(
+                    batch.stream().map(DocumentRequest::getUrl).toList());
+            List<Document> documents = new ArrayList<>(batch.size());
+            for (DocumentRequest request : batch) {
+                if (!existing.contains(request.getUrl())) {
+                    documents.add(new Document(request.getTitle(), request.getContent(), request.getUrl()));
+                }
+            }
+            if (documents.isEmpty()) return 0;
+
+            List<Document> inserted = documentBulkRepository.insertAll(documents);
+            indexingQueue.addAll(inserted);
+            return inserted.size();
+        });
+        log.debug("Bulk batch of {} documents: {} created", batch.size(), created);
+        return created != null ? created : 0;
+    }
+
     /**
      * Download all documents sorted by created date (newest first)
      */
@@ -88,8 +175,8 @@ public class DocumentService {
 
         Document updated = documentRepository.save(document);
 
-        indexingService.removeDocument(String.valueOf(id));
-        indexingService.addDocument(String.valueOf(id), updated.getContent());
+        // Re-adding replaces the indexed version
+        indexingQueue.add(String.valueOf(id), updated.getTitle(), updated.getContent(), updated.getUrl());
 
         log.info("Document updated: ID={}", id);
         return updated;
@@ -107,7 +194,7 @@ public class DocumentService {
         }
 
         documentRepository.deleteById(id);
-        indexingService.removeDocument(String.valueOf(id));
+        indexingQueue.delete(String.valueOf(id));
 
         log.info("Document deleted: ID={}", id);
     }
@@ -119,10 +206,31 @@ public class DocumentService {
     public void deleteAllDocuments() {
         log.info("Deleting all documents");
         documentRepository.deleteAll();
-        indexingService.clearIndex();
+        indexingQueue.clear();
         log.info("All documents deleted");
     }
 
+    /**
+     * Blocks until all committed changes are searchable (opt-in for callers that read their own writes).
+     * Must be called after the transaction of the change, not inside it.
+     *
+     * @return false when the index did not catch up within search.indexing.wait-timeout-ms
+     */
+    public boolean waitUntilSearchable() {
+        try {
+            indexingQueue.whenSearchable().get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("Index not refreshed within {} ms", waitTimeoutMillis);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Waiting for the index failed", e.getCause());
+        }
+    }
+
     /**
      * Count all documents
      */
@@ -139,8 +247,7 @@ public class DocumentService {
                     existing.setCrawledAt(LocalDateTime.now());
                     Document updated = documentRepository.save(existing);
 
-                    indexingService.removeDocument(String.valueOf(existing.getId()));
-                    indexingService.addDocument(String.valueOf(existing.getId()), content);
+                    indexingQueue.add(String.valueOf(existing.getId()), title, content, url);
 
                     log.info("Document updated by crawler: ID={}", existing.getId());
                     return updated;
@@ -150,7 +257,7 @@ public class DocumentService {
                     newDoc.setCrawledAt(LocalDateTime.now());
                     Document saved = documentRepository.save(newDoc);
 
-                    indexingService.addDocument(String.valueOf(saved.getId()), content);
+                    indexingQueue.add(String.valueOf(saved.getId()), title, content, url);
 
                     log.info("Document added by crawler: ID={}", saved.getId());
                     return saved;
@@ -1,46 +1,241 @@
 package pl.pw.edu.po.search_engine.simplesearchengine.service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexStore;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PartialIndex;
 import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentRepository;
+import pl.pw.edu.po.search_engine.simplesearchengine.repository.IndexedDocument;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Initializes InvertedIndex from PostgreSQL on application startup.
- * Replaces the old PersistenceService (index.ser approach).
+ * Initializes InvertedIndex on application startup.
+ * Opens the memory-mapped index from local disk when it matches PostgreSQL,
+ * otherwise rebuilds it from the database and writes it to disk for the next start.
+ * The rebuild streams the table page by page and analyzes on all cores, see rebuild().
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class IndexInitializationService {
 
+    private static final String DOCUMENT_COUNT = "documentCount";
+    private static final String LAST_UPDATED_AT = "lastUpdatedAt";
+
     private final DocumentRepository documentRepository;
     private final IndexingService indexingService;
+    // Depending on the queue makes Spring destroy this service first, see persistIndex()
+    private final IndexingQueue indexingQueue;
+
+    @Value("${search.index.directory:data/index}")
+    private String indexDirectory;
+
+    // Documents read from PostgreSQL per keyset page
+    @Value("${search.index.rebuild.batch-size:500}")
+    private int rebuildBatchSize;
+
+    // Analysis workers of a rebuild, 0 = one per core
+    @Value("${search.index.rebuild.threads:0}")
+    private int rebuildThreads;
+
+    @Getter
+    private final IndexRebuildProgress rebuildProgress = new IndexRebuildProgress();
+
+    private IndexStore indexStore;
 
     /**
-     * Rebuild InvertedIndex from PostgreSQL on startup
+     * Open the on-disk index or rebuild InvertedIndex from PostgreSQL on startup
      */
     @PostConstruct
     public void initializeIndex() {
-        log.info("Initializing InvertedIndex from database...");
+        indexStore = new IndexStore(Path.of(indexDirectory));
+        Map<String, String> databaseState = databaseState();
 
-        List<Document> allDocuments = documentRepository.findAll();
+        if (openStoredIndex(databaseState)) {
+            return;
+        }
 
-        if (allDocuments.isEmpty()) {
+        long documentCount = Long.parseLong(databaseState.get(DOCUMENT_COUNT));
+        if (documentCount == 0) {
             log.info("No documents found in database. Starting with empty index.");
             return;
         }
 
-        // Rebuild index from all documents
-        allDocuments.forEach(doc -> {
-            indexingService.addDocument(String.valueOf(doc.getId()), doc.getContent());
-        });
+        log.info("Initializing InvertedIndex from database ({} documents)...", documentCount);
+        rebuild(documentCount);
+        log.info("InvertedIndex initialized with {} documents in {} ms",
+                indexingService.getDocumentCount(), rebuildProgress.status().elapsedMillis());
+        persist(databaseState);
+    }
+
+    /**
+     * Streams the documents table in ID order, one keyset page at a time, to a pool of workers.
+     * Every worker analyzes its pages into a private partial index (no shared lock), the partial
+     * indexes are published together at the end. At most a few pages per worker wait in memory:
+     * the reader blocks while the queue is full.
+     */
+    private void rebuild(long documentCount) {
+        int threads = rebuildThreads > 0 ? rebuildThreads : Runtime.getRuntime().availableProcessors();
+        rebuildProgress.start(documentCount);
 
-        log.info("InvertedIndex initialized with {} documents", allDocuments.size());
+        BlockingQueue<List<IndexedDocument>> pages = new ArrayBlockingQueue<>(2 * threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "index-rebuild-" + threadNumber.incrementAndGet()));
+        try {
+            List<Future<PartialIndex>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> analyzePages(pages)));
+            }
+
+            long lastId = 0;
+            while (true) {
+                List<IndexedDocument> page = documentRepository.findByIdGreaterThanOrderByIdAsc(
+                        lastId, Limit.of(rebuildBatchSize));
+                if (page.isEmpty()) break;
+                enqueue(pages, page, workers);
+                lastId = page.get(page.size() - 1).getId();
+                if (page.size() < rebuildBatchSize) break;
+            }
+            // An empty page tells a worker to stop
+            for (int i = 0; i < threads; i++) {
+                enqueue(pages, List.of(), workers);
+            }
+
+            List<PartialIndex> partialIndexes = new ArrayList<>(threads);
+            for (Future<PartialIndex> worker : workers) {
+                partialIndexes.add(worker.get());
+            }
+            indexingService.publish(partialIndexes);
+            rebuildProgress.complete();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rebuildProgress.fail(e);
+            throw new IllegalStateException("Index rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            rebuildProgress.fail(e.getCause());
+            throw new IllegalStateException("Index rebuild failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (RuntimeException e) {
+            rebuildProgress.fail(e);
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
     }
-}
 
+    private PartialIndex analyzePages(BlockingQueue<List<IndexedDocument>> pages) throws InterruptedException {
+        PartialIndex partialIndex = indexingService.newPartialIndex();
+        while (true) {
+            List<IndexedDocument> page = pages.take();
+            if (page.isEmpty()) return partialIndex;
+
+            for (IndexedDocument doc : page) {
+                indexingService.addDocument(partialIndex, String.valueOf(doc.getId()),
+                        doc.getTitle(), doc.getContent(), doc.getUrl());
+            }
+            rebuildProgress.advance(page.size());
+        }
+    }
+
+    /**
+     * Blocks while the queue is full, but gives up as soon as a worker has died.
+     */
+    private static void enqueue(BlockingQueue<List<IndexedDocument>> pages, List<IndexedDocument> page,
+                                List<Future<PartialIndex>> workers) throws InterruptedException, ExecutionException {
+        while (!pages.offer(page, 1, TimeUnit.SECONDS)) {
+            for (Future<PartialIndex> worker : workers) {
+                if (worker.isDone()) {
+                    worker.get();
+                    throw new IllegalStateException("Index rebuild worker stopped early");
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the index to disk on shutdown so the next start can map it.
+     * Committed changes still in the indexing queue are already part of the database fingerprint,
+     * so the queue is drained first; an index missing some of them is not written at all.
+     */
+    @PreDestroy
+    public void persistIndex() {
+        if (indexStore == null) return;
+        try {
+            indexingQueue.shutdown();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (indexingQueue.pending() > 0) {
+            log.warn("{} index changes not applied, not writing the index (rebuilt on next start)",
+                    indexingQueue.pending());
+            return;
+        }
+        indexingService.refresh();
+        persist(databaseState());
+    }
+
+    /**
+     * @return true when a stored index matching the database was opened
+     */
+    private boolean openStoredIndex(Map<String, String> databaseState) {
+        try {
+            IndexStore.Commit commit = indexStore.open();
+            if (commit == null) {
+                log.info("No index found in {}", indexDirectory);
+                return false;
+            }
+            if (!Objects.equals(commit.userData(), databaseState)) {
+                log.info("Index in {} is stale (stored: {}, database: {})",
+                        indexDirectory, commit.userData(), databaseState);
+                return false;
+            }
+
+            indexingService.restore(commit.snapshot());
+            log.info("InvertedIndex opened from {} with {} documents",
+                    indexDirectory, commit.snapshot().documentCount());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not open index from {}, rebuilding: {}", indexDirectory, e.getMessage());
+            return false;
+        }
+    }
+
+    private void persist(Map<String, String> databaseState) {
+        IndexSnapshot snapshot = indexingService.getInvertedIndex().snapshot();
+        try {
+            indexStore.commit(snapshot, databaseState);
+        } catch (IOException e) {
+            log.warn("Could not write index to {}: {}", indexDirectory, e.getMessage());
+        }
+    }
+
+    /**
+     * Fingerprint of the documents table: any insert, update or delete changes it.
+     */
+    private Map<String, String> databaseState() {
+        return Map.of(
+                DOCUMENT_COUNT, String.valueOf(documentRepository.count()),
+                LAST_UPDATED_AT, documentRepository.findLastUpdatedAt().map(Object::toString).orElse(""));
+    }
+}
@@ -0,0 +1,69 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of the index rebuild from PostgreSQL, updated by the rebuild workers.
+ * Logged every 10% and readable at any time (actuator /indexrebuild).
+ */
+@Slf4j
+public class IndexRebuildProgress {
+
+    public enum State {IDLE, RUNNING, COMPLETED, FAILED}
+
+    /**
+     * Point-in-time view of the progress.
+     */
+    public record Status(State state, long totalDocuments, long indexedDocuments, double percent,
+                         long elapsedMillis, double documentsPerSecond, String error) {
+    }
+
+    private volatile State state = State.IDLE;
+    private volatile long totalDocuments;
+    private final AtomicLong indexedDocuments = new AtomicLong();
+    private volatile long startNanos;
+    private volatile long endNanos;
+    private volatile String error;
+
+    void start(long totalDocuments) {
+        this.totalDocuments = totalDocuments;
+        this.indexedDocuments.set(0);
+        this.error = null;
+        this.startNanos = System.nanoTime();
+        this.endNanos = 0;
+        this.state = State.RUNNING;
+    }
+
+    void advance(int documents) {
+        long before = indexedDocuments.getAndAdd(documents);
+        long total = Math.max(1, totalDocuments);
+        long decile = (before + documents) * 10 / total;
+        if (decile > before * 10 / total) {
+            log.info("Index rebuild: {} of {} documents ({}%), {} docs/s",
+                    before + documents, totalDocuments, Math.min(100, decile * 10), Math.round(status().documentsPerSecond()));
+        }
+    }
+
+    void complete() {
+        endNanos = System.nanoTime();
+        state = State.COMPLETED;
+    }
+
+    void fail(Throwable cause) {
+        endNanos = System.nanoTime();
+        error = String.valueOf(cause.getMessage());
+        state = State.FAILED;
+    }
+
+    public Status status() {
+        State current = state;
+        long indexed = indexedDocuments.get();
+        long elapsedNanos = current == State.IDLE ? 0 : (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+        double percent = totalDocuments == 0 ? (current == State.COMPLETED ? 100.0 : 0.0)
+                : Math.min(100.0, 100.0 * indexed / totalDocuments);
+        double perSecond = elapsedNanos == 0 ? 0.0 : indexed * 1e9 / elapsedNanos;
+        return new Status(current, totalDocuments, indexed, percent, elapsedNanos / 1_000_000, perSecond, error);
+    }
+}
@@ -0,0 +1,293 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.pw.edu.po.search_engine.simplesearchengine.exception.IndexingQueueFullException;
+import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous indexing pipeline between database writes and the index.
+ * - callers reserve room in the bounded queue inside their transaction: when it is full they wait up to
+ *   offer-timeout, then IndexingQueueFullException rolls the transaction back (backpressure)
+ * - operations are enqueued only after the transaction commits, rolled back ones free their room
+ * - one writer thread takes operations in submission order, in batches; the documents of a batch are
+ *   analyzed in parallel by worker threads, then applied to the index in order
+ * - buffered documents and deletes become searchable with a refresh at most every refresh-interval (earlier
+ *   when the index buffer is full), one segment and one snapshot per refresh instead of one per operation;
+ *   whenSearchable() lets callers wait for that
+ */
+@Service
+@Slf4j
+public class IndexingQueue {
+
+    private sealed interface Operation permits Add, Delete, Clear {
+    }
+
+    private record Add(String docId, String title, String content, String url) implements Operation {
+    }
+
+    private record Delete(String docId) implements Operation {
+    }
+
+    private record Clear() implements Operation {
+    }
+
+    private record Queued(long sequence, Operation operation) {
+    }
+
+    // Put into the queue by shutdown() so the writer does not sleep until the next refresh
+    private static final Queued WAKE_UP = new Queued(-1, null);
+
+    private final IndexingService indexingService;
+    private final int capacity;
+    private final int batchSize;
+    private final long refreshIntervalNanos;
+    private final long offerTimeoutMillis;
+
+    // Room in the queue, taken before commit and given back once the operation is applied
+    private final Semaphore room;
+    private final BlockingQueue<Queued> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService analyzers;
+    private final Thread writer;
+
+    // Sequence of the last enqueued operation (guarded by this), of the last searchable one (writer only)
+    private long enqueued;
+    private volatile long searchable;
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Void>> waiters = new ConcurrentSkipListMap<>();
+    private volatile boolean running = true;
+
+    public IndexingQueue(IndexingService indexingService,
+                         @Value("${search.indexing.queue-capacity:10000}") int capacity,
+                         @Value("${search.indexing.batch-size:500}") int batchSize,
+                         @Value("${search.indexing.threads:2}") int threads,
+                         @Value("${search.indexing.refresh-interval-ms:1000}") long refreshIntervalMillis,
+                         @Value("${search.indexing.offer-timeout-ms:5000}") long offerTimeoutMillis) {
+        this.indexingService = indexingService;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshIntervalMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.room = new Semaphore(capacity);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.analyzers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "index-analyzer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::run, "index-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        log.info("Indexing queue: capacity {}, batches of {}, {} analysis threads, refresh every {} ms",
+                capacity, batchSize, threads, refreshIntervalMillis);
+    }
+
+    /**
+     * Index the document (replacing an indexed version) once the current transaction commits.
+     */
+    public void add(String docId, String title, String content, String url) {
+        submit(new Add(docId, title, content, url));
+    }
+
+    /**
+     * Index stored documents (with IDs) once the current transaction commits: room for all of them is
+     * reserved at once and they are enqueued back to back, so the writer analyzes them in full batches.
+     */
+    public void addAll(Collection<Document> documents) {
+        if (documents.size() > capacity) {
+            throw new IllegalArgumentException(
+                    "Cannot submit " + documents.size() + " documents to a queue of capacity " + capacity);
+        }
+        List<Operation> operations = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            operations.add(new Add(String.valueOf(document.getId()), document.getTitle(), document.getContent(),
+                    document.getUrl()));
+        }
+        submit(operations);
+    }
+
+    /**
+     * Remove the document from the index once the current transaction commits.
+     */
+    public void delete(String docId) {
+        submit(new Delete(docId));
+    }
+
+    /**
+     * Clear the index once the current transaction commits, after everything submitted before.
+     */
+    public void clear() {
+        submit(new Clear());
+    }
+
+    /**
+     * Completes when every operation enqueued so far is searchable.
+     * Operations of a transaction are enqueued on commit, so call it after the transaction.
+     */
+    public CompletableFuture<Void> whenSearchable() {
+        long target;
+        synchronized (this) {
+            target = enqueued;
+        }
+        if (searchable >= target) return CompletableFuture.completedFuture(null);
+
+        CompletableFuture<Void> future = waiters.computeIfAbsent(target, sequence -> new CompletableFuture<>());
+        // The writer may have completed the waiters between the check and the registration
+        if (searchable >= target) {
+            waiters.remove(target);
+            future.complete(null);
+        }
+        return future;
+    }
+
+    /**
+     * Operations reserved or queued but not applied yet.
+     */
+    public int pending() {
+        return capacity - room.availablePermits();
+    }
+
+    /**
+     * Applies and publishes everything still queued, then stops the threads.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        queue.add(WAKE_UP);
+        writer.join(TimeUnit.NANOSECONDS.toMillis(refreshIntervalNanos) + 30_000);
+        analyzers.shutdownNow();
+    }
+
+    private void submit(Operation operation) {
+        submit(List.of(operation));
+    }
+
+    private void submit(List<Operation> operations) {
+        if (!running) {
+            throw new IllegalStateException("Indexing queue is shut down");
+        }
+        if (operations.isEmpty()) return;
+
+        reserve(operations.size());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        enqueue(operations);
+                    } else {
+                        room.release(operations.size());
+                    }
+                }
+            });
+        } else {
+            enqueue(operations);
+        }
+    }
+
+    private void reserve(int permits) {
+        try {
+            if (!room.tryAcquire(permits, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IndexingQueueFullException(
+                        "Indexing queue is full (" + capacity + " pending operations), try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexingQueueFullException("Interrupted while waiting for room in the indexing queue");
+        }
+    }
+
+    private synchronized void enqueue(List<Operation> operations) {
+        for (Operation operation : operations) {
+            queue.add(new Queued(++enqueued, operation));
+        }
+    }
+
+    private void run() {
+        long nextRefresh = System.nanoTime() + refreshIntervalNanos;
+        long applied = 0;
+        List<Queued> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                long timeout = running ? Math.max(0, nextRefresh - System.nanoTime()) : 0;
+                Queued first = queue.poll(timeout, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    batch.remove(WAKE_UP);
+                }
+                if (!batch.isEmpty()) {
+                    try {
+                        apply(batch);
+                    } finally {
+                        applied = batch.get(batch.size() - 1).sequence();
+                        room.release(batch.size());
+                        batch.clear();
+                    }
+                }
+
+                boolean stopping = !running && queue.isEmpty();
+                // A full buffer is published early; the refresh moves the index generation with visibility
+                if (stopping || System.nanoTime() - nextRefresh >= 0 || indexingService.isBufferFull()) {
+                    if (applied > searchable) {
+                        indexingService.refresh();
+                        searchable = applied;
+                        completeWaiters(applied);
+                    }
+                    nextRefresh = System.nanoTime() + refreshIntervalNanos;
+                }
+                if (stopping) return;
+            } catch (InterruptedException e) {
+                log.warn("Index writer interrupted, {} operations not applied", queue.size());
+                return;
+            } catch (RuntimeException e) {
+                log.error("Indexing batch failed: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Analyzes the added documents of the batch in parallel, then applies all operations in order.
+     */
+    private void apply(List<Queued> batch) throws InterruptedException {
+        List<Future<IndexingService.AnalyzedDocument>> analyzed = new ArrayList<>(batch.size());
+        for (Queued queued : batch) {
+            analyzed.add(queued.operation() instanceof Add add
+                    ? analyzers.submit(() -> indexingService.analyze(add.docId(), add.title(), add.content(), add.url()))
+                    : null);
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            switch (batch.get(i).operation()) {
+                case Add add -> {
+                    try {
+                        indexingService.bufferDocument(analyzed.get(i).get());
+                    } catch (ExecutionException e) {
+                        log.error("Could not index document {}: {}", add.docId(), e.getCause().getMessage());
+                    }
+                }
+                case Delete delete -> indexingService.bufferDelete(delete.docId());
+                case Clear clear -> indexingService.clearIndex();
+            }
+        }
+    }
+
+    private void completeWaiters(long sequence) {
+        Map<Long, CompletableFuture<Void>> done = waiters.headMap(sequence, true);
+        for (CompletableFuture<Void> future : done.values()) {
+            future.complete(null);
+        }
+        done.clear();
+    }
+}
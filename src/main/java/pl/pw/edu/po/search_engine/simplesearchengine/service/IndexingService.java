@@ -1,25 +1,46 @@
 package pl.pw.edu.po.search_engine.simplesearchengine.service;
 
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import pl.pw.edu.po.search_engine.simplesearchengine.dto.DocumentRequest;
 import pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis.TextPreprocessor;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.ActiveIndex;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Field;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
 import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.InvertedIndex;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PartialIndex;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 @Service
 @Slf4j
 public class IndexingService {
 
+    // Scheme and "www." carry no meaning, the rest of the URL is tokenized like text
+    private static final Pattern URL_PREFIX = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*://(www\\.)?");
+
     private final TextPreprocessor textPreprocessor;
-    @Getter
-    private final InvertedIndex invertedIndex;
+    // Index serving searches and writes, replaced as a whole by replaceIndex()
+    private final ActiveIndex activeIndex;
+    // Bumped AFTER every change of searchable content; readers take the generation BEFORE the snapshot,
+    // so results computed on a snapshot are never cached under a newer generation
+    private final AtomicLong generation = new AtomicLong();
 
     public IndexingService() {
-        this.textPreprocessor = new TextPreprocessor();
-        this.invertedIndex = new InvertedIndex();
+        this(new TextPreprocessor());
+    }
+
+    @Autowired
+    public IndexingService(TextPreprocessor textPreprocessor) {
+        this.textPreprocessor = textPreprocessor;
+        this.activeIndex = new ActiveIndex(new InvertedIndex());
     }
 
     /**
@@ -30,7 +51,9 @@ public class IndexingService {
     public int index(DocumentRequest request) {
         String content = request.getContent();
         List<String> tokens = textPreprocessor.process(content);
-        return invertedIndex.addDocument(content, tokens);
+        int docId = index().addDocument(content, tokens);
+        generation.incrementAndGet();
+        return docId;
     }
 
     /**
@@ -39,9 +62,109 @@ public class IndexingService {
      * @param content - Document content
      */
     public void addDocument(String docId, String content) {
+        addDocument(docId, null, content);
+    }
+
+    /**
+     * Add document to index together with its title (stored and indexed as the title field)
+     */
+    public void addDocument(String docId, String title, String content) {
+        addDocument(docId, title, content, null);
+    }
+
+    /**
+     * Add document to index with title, content and URL indexed as separate fields
+     */
+    public void addDocument(String docId, String title, String content, String url) {
         log.debug("Adding document to index: docId={}", docId);
-        List<String> tokens = textPreprocessor.process(content);
-        invertedIndex.addDocument(Integer.parseInt(docId), content, tokens);
+        ContentTokens tokens = analyze(content);
+        index().addDocument(Integer.parseInt(docId), title, content, fields(title, tokens, url), tokens.offsets());
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Add document to the index buffer without making it searchable yet (bulk loads).
+     * Call refresh() once the batch is complete.
+     */
+    public void bufferDocument(String docId, String title, String content) {
+        bufferDocument(docId, title, content, null);
+    }
+
+    public void bufferDocument(String docId, String title, String content, String url) {
+        ContentTokens tokens = analyze(content);
+        index().bufferDocument(Integer.parseInt(docId), title, content, fields(title, tokens, url),
+                tokens.offsets());
+    }
+
+    /**
+     * Document after analysis, ready to be buffered; see analyze()
+     */
+    public record AnalyzedDocument(int docId, String title, String content, Map<Field, List<String>> tokens,
+                                   int[] offsets) {
+    }
+
+    /**
+     * Analysis only, without touching the index, so it can run on any thread
+     */
+    public AnalyzedDocument analyze(String docId, String title, String content, String url) {
+        ContentTokens tokens = analyze(content);
+        return new AnalyzedDocument(Integer.parseInt(docId), title, content, fields(title, tokens, url),
+                tokens.offsets());
+    }
+
+    /**
+     * Buffer an already analyzed document, searchable after the next refresh()
+     */
+    public void bufferDocument(AnalyzedDocument document) {
+        index().bufferDocument(document.docId(), document.title(), document.content(), document.tokens(),
+                document.offsets());
+    }
+
+    /**
+     * Whether buffered documents should be made searchable with refresh() now, without waiting for the
+     * refresh interval, to keep the buffer small
+     */
+    public boolean isBufferFull() {
+        return index().isBufferFull();
+    }
+
+    /**
+     * Private partial index for one worker of a parallel bulk load, see publish()
+     */
+    public PartialIndex newPartialIndex() {
+        return index().newPartialIndex();
+    }
+
+    /**
+     * Analyze the document on the calling thread and add it to the worker's partial index
+     */
+    public void addDocument(PartialIndex partialIndex, String docId, String title, String content, String url) {
+        ContentTokens tokens = analyze(content);
+        partialIndex.addDocument(Integer.parseInt(docId), title, content, fields(title, tokens, url), tokens.offsets());
+    }
+
+    /**
+     * Make documents of the partial indexes searchable, all at once
+     */
+    public void publish(List<PartialIndex> partialIndexes) {
+        index().addPartialIndexes(partialIndexes);
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Make buffered documents searchable
+     */
+    public void refresh() {
+        index().refresh();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Replace the searchable content with a snapshot opened from disk
+     */
+    public void restore(IndexSnapshot snapshot) {
+        index().restore(snapshot);
+        generation.incrementAndGet();
     }
 
     /**
@@ -50,7 +173,17 @@ public class IndexingService {
      */
     public void removeDocument(String docId) {
         log.debug("Removing document from index: docId={}", docId);
-        invertedIndex.removeDocument(Integer.parseInt(docId));
+        index().removeDocument(Integer.parseInt(docId));
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Remove document from index when the next refresh() publishes buffered changes
+     * @param docId - Document ID to remove
+     */
+    public void bufferDelete(String docId) {
+        log.debug("Buffering removal of document: docId={}", docId);
+        index().bufferDelete(Integer.parseInt(docId));
     }
 
     /**
@@ -58,30 +191,101 @@ public class IndexingService {
      */
     public void clearIndex() {
         log.info("Clearing entire index");
-        invertedIndex.clear();
+        index().clear();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Index generation - changes whenever added, removed or cleared documents become visible to searches
+     */
+    public long getGeneration() {
+        return generation.get();
     }
 
     /**
      * Returns number of all indexed documents
      */
     public int getDocumentCount() {
-        return invertedIndex.getDocumentCount();
+        return index().getDocumentCount();
     }
 
     /**
      * Helper function for tests
      */
     public void printIndex() {
-        invertedIndex.printIndex();
+        index().printIndex();
+    }
+
+    /**
+     * Tokens of every indexed field; title and URL go through the same analysis as the content
+     */
+    private Map<Field, List<String>> fields(String title, ContentTokens contentTokens, String url) {
+        Map<Field, List<String>> fields = new EnumMap<>(Field.class);
+        fields.put(Field.CONTENT, contentTokens.terms);
+        if (title != null) {
+            fields.put(Field.TITLE, textPreprocessor.process(title));
+        }
+        if (url != null) {
+            fields.put(Field.URL, textPreprocessor.process(URL_PREFIX.matcher(url).replaceFirst("")));
+        }
+        return fields;
+    }
+
+    private ContentTokens analyze(String content) {
+        ContentTokens tokens = new ContentTokens();
+        textPreprocessor.tokenize(content, tokens);
+        return tokens;
     }
 
     /**
-     * Replace index content with new index (delegation pattern)
-     * Clears current index and merges content from newIndex
-     * Keeps the same InvertedIndex object instance (final field)
+     * Replace index content with an index built off to the side.
+     * Published with a single pointer flip: searches see either the old or the new index, never an empty one,
+     * and searches already running finish on the old index before it is closed.
      */
     public void replaceIndex(InvertedIndex newIndex) {
-        invertedIndex.clear();
-        invertedIndex.merge(newIndex);
+        newIndex.refresh();
+        activeIndex.swap(newIndex);
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Current index; searches should use acquireSearcher() instead, which pins the index for the request
+     */
+    public InvertedIndex getInvertedIndex() {
+        return activeIndex.current();
+    }
+
+    /**
+     * Pins the current index and snapshot until the returned searcher is closed
+     */
+    public ActiveIndex.Searcher acquireSearcher() {
+        return activeIndex.acquire();
+    }
+
+    private InvertedIndex index() {
+        return activeIndex.current();
+    }
+
+    /**
+     * Content terms and the start and end character of every token, stored in the index for highlighting
+     */
+    private static final class ContentTokens implements TextPreprocessor.TokenSink {
+        final List<String> terms = new ArrayList<>();
+        int[] offsets = new int[64];
+
+        @Override
+        public void accept(char[] term, int length, int start, int end) {
+            int size = 2 * terms.size();
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * size);
+            }
+            offsets[size] = start;
+            offsets[size + 1] = end;
+            terms.add(new String(term, 0, length));
+        }
+
+        int[] offsets() {
+            return Arrays.copyOf(offsets, 2 * terms.size());
+        }
     }
 }
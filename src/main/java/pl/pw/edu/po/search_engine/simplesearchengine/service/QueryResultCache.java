@@ -0,0 +1,153 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.query.Query;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.TopKCollector;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size-aware LRU cache of ranked result pages.
+ * - key: parsed (analyzed, normalized) query plus paging, so "Java  programs" and "java program" share an entry
+ * - value: document IDs and scores of the page and the hit count - documents are hydrated on every request
+ * - bounded by the estimated heap footprint of the entries, least recently used entries go first
+ * - invalidated as a whole when the index generation (see {@link IndexingService#getGeneration()}) moves on
+ * Hits, misses, evictions and size are published as Micrometer "cache.*" meters (actuator /metrics),
+ * bound by Spring Boot once the cache is constructed.
+ */
+@Component
+@Slf4j
+public class QueryResultCache implements MeterBinder {
+
+    static final String CACHE_NAME = "search-results";
+
+    // rough per-object costs of the entry graph in bytes (headers, references, map node)
+    private static final long ENTRY_OVERHEAD = 128;
+    private static final long HIT_SIZE = 40;
+
+    /**
+     * Normalized query and requested page.
+     */
+    public record Key(Query query, int offset, int limit) {
+    }
+
+    /**
+     * Ranked page of one query.
+     */
+    public record Entry(List<TopKCollector.ScoredDoc> hits, long totalHits, boolean totalHitsExact) {
+        public Entry {
+            hits = List.copyOf(hits);
+        }
+    }
+
+    private final long maxWeight;
+    // access order = LRU iteration order; guarded by this
+    private final LinkedHashMap<Key, Sized> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public QueryResultCache(@Value("${search.cache.max-bytes:16777216}") long maxWeight) {
+        this.maxWeight = maxWeight;
+        log.info("Search result cache bounded to {} bytes", maxWeight);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", this, QueryResultCache::hitCount).tag("cache", CACHE_NAME).tag("result", "hit")
+                .description("Search result cache lookups").register(registry);
+        FunctionCounter.builder("cache.gets", this, QueryResultCache::missCount).tag("cache", CACHE_NAME).tag("result", "miss")
+                .description("Search result cache lookups").register(registry);
+        FunctionCounter.builder("cache.evictions", this, QueryResultCache::evictionCount).tag("cache", CACHE_NAME)
+                .description("Entries evicted to stay within the size bound").register(registry);
+        Gauge.builder("cache.size", this, QueryResultCache::size).tag("cache", CACHE_NAME)
+                .description("Number of cached result pages").register(registry);
+        Gauge.builder("cache.weight", this, QueryResultCache::weight).tag("cache", CACHE_NAME)
+                .description("Estimated heap footprint of the cached pages").baseUnit("bytes").register(registry);
+    }
+
+    /**
+     * @param generation index generation read BEFORE the snapshot the caller searches
+     * @return cached page or null
+     */
+    public synchronized Entry get(Key key, long generation) {
+        invalidateIfOutdated(generation);
+        Sized sized = entries.get(key);
+        if (sized == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return sized.entry();
+    }
+
+    /**
+     * Caches a page computed against the given generation; pages of outdated generations are dropped.
+     */
+    public synchronized void put(Key key, long generation, Entry entry) {
+        invalidateIfOutdated(generation);
+        if (generation < this.generation) return;
+
+        long entryWeight = weigh(key, entry);
+        if (entryWeight > maxWeight) return;
+
+        Sized previous = entries.put(key, new Sized(entry, entryWeight));
+        if (previous != null) {
+            weight -= previous.weight();
+        }
+        weight += entryWeight;
+
+        Iterator<Map.Entry<Key, Sized>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getValue().weight();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    private synchronized double hitCount() {
+        return hits;
+    }
+
+    private synchronized double missCount() {
+        return misses;
+    }
+
+    private synchronized double evictionCount() {
+        return evictions;
+    }
+
+    private void invalidateIfOutdated(long generation) {
+        if (generation > this.generation) {
+            entries.clear();
+            weight = 0;
+            this.generation = generation;
+        }
+    }
+
+    private static long weigh(Key key, Entry entry) {
+        return ENTRY_OVERHEAD + 2L * key.query().toString().length() + HIT_SIZE * entry.hits().size();
+    }
+
+    private record Sized(Entry entry, long weight) {
+    }
+}
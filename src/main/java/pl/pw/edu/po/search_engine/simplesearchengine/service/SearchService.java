@@ -1,26 +1,49 @@
 package pl.pw.edu.po.search_engine.simplesearchengine.service;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import pl.pw.edu.po.search_engine.simplesearchengine.dto.*;
 import pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis.TextPreprocessor;
-import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.InvertedIndex;
-import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.ActiveIndex;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsList;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Segment;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.query.Query;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.query.QueryParser;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.FieldBoosts;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.Highlighter;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.QueryEvaluator;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.Similarity;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.TopKCollector;
 import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentRepository;
+import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentSummary;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class SearchService {
 
+    private static final int SNIPPET_LENGTH = 200;
+
     private final IndexingService indexingService;
-    private final TfIdfScoringService tfIdfScoringService;
+    private final Similarity similarity;
+    private final FieldBoosts fieldBoosts;
     private final DocumentRepository documentRepository;
-    private final TextPreprocessor textPreprocessor = new TextPreprocessor();
+    private final QueryResultCache resultCache;
+    // Query words go through the same analyzer bean (and stem cache) as indexed documents
+    private final QueryParser queryParser;
+
+    public SearchService(IndexingService indexingService, Similarity similarity, FieldBoosts fieldBoosts,
+                         DocumentRepository documentRepository, QueryResultCache resultCache,
+                         TextPreprocessor textPreprocessor) {
+        this.indexingService = indexingService;
+        this.similarity = similarity;
+        this.fieldBoosts = fieldBoosts;
+        this.documentRepository = documentRepository;
+        this.resultCache = resultCache;
+        this.queryParser = new QueryParser(textPreprocessor);
+    }
 
     /**
      * Mai search endpoint with pagination, snippets, and full document data.
@@ -31,44 +54,45 @@ public class SearchService {
         log.info("Searching for: {} (limit: {}, offset: {})",
                 request.getQuery(), request.getLimit(), request.getOffset());
 
-        // 1. Tokenize query
-        List<String> queryTokens = textPreprocessor.process(request.getQuery());
-        if (queryTokens.isEmpty()) {
+        // 1. Parse the query language (AND / OR / NOT / parentheses), words are analyzed like documents
+        Query query = queryParser.parse(request.getQuery(), QueryParser.Operator.valueOf(request.getOperator().name()));
+        if (query == null) {
             return buildEmptyResponse(request, startTime);
         }
 
-        // 2. Find matching document IDs from inverted index
-        Set<Integer> matchingDocIds = findMatchingDocuments(queryTokens);
-        if(matchingDocIds.isEmpty()) {
-            return buildEmptyResponse(request, startTime);
+        // 2. Score matching documents inside the index, keep only the best offset + limit
+        // Generation first, then the snapshot: a page is never cached under a newer generation than its data
+        long generation = indexingService.getGeneration();
+        // The searcher pins the index: a concurrent replaceIndex() does not close it under this request
+        try (ActiveIndex.Searcher searcher = indexingService.acquireSearcher()) {
+            return search(request, query, generation, searcher.snapshot(), startTime);
         }
+    }
 
-        // 3. Fetch fill documetns from PostgreSQL
-        List<Long> docsIdsLong = matchingDocIds.stream()
-                .map(Integer::longValue)
-                .toList();
-
-        List<Document> documents = documentRepository.findAllById(docsIdsLong);
-
-        // 4. Score documents and create result
-        List<SearchResult> allResults = documents.stream()
-                .map(doc -> createSearchResult(doc, queryTokens))
-                .filter(result -> result.getScore() > 0)
-                .sorted(Comparator.comparingDouble(SearchResult::getScore).reversed())
-                .toList();
+    private SearchResponse search(SearchRequest request, Query query, long generation, IndexSnapshot snapshot,
+                                  long startTime) {
+        List<String> queryTokens = query.positiveTerms();
+        QueryResultCache.Key cacheKey = new QueryResultCache.Key(query, request.getOffset(), request.getLimit());
+        QueryResultCache.Entry ranked = resultCache.get(cacheKey, generation);
+        if (ranked == null) {
+            ranked = rank(snapshot, query, request);
+            resultCache.put(cacheKey, generation, ranked);
+        }
+        if (ranked.totalHits() == 0) {
+            return buildEmptyResponse(request, startTime);
+        }
 
-        // 5. Apply pagination
-        List<SearchResult> paginatedResult = allResults.stream()
-                .skip(request.getOffset())
-                .limit(request.getLimit())
-                .toList();
+        // 3. Fetch only the returned page from PostgreSQL (without content)
+        List<TopKCollector.ScoredDoc> page = ranked.hits();
+        List<SearchResult> paginatedResult = hydrate(snapshot, page, queryTokens);
 
         long searchTimeMs = System.currentTimeMillis() - startTime;
-        log.info("Search completed in {} ms. Found {} results", searchTimeMs, allResults.size());
+        log.info("Search completed in {} ms. Found {} results", searchTimeMs, ranked.totalHits());
 
         return SearchResponse.builder()
                 .query(request.getQuery())
-                .totalResults((long) allResults.size())
+                .totalResults(ranked.totalHits())
+                .totalResultsExact(ranked.totalHitsExact())
                 .limit(request.getLimit())
                 .offset(request.getOffset())
                 .results(paginatedResult)
@@ -77,94 +101,77 @@ public class SearchService {
     }
 
     /**
-     * Find documents containing ALL query tokens.
+     * Evaluates the query and applies pagination to the ranked hits.
      */
-    private Set<Integer> findMatchingDocuments(List<String> queryTokens) {
-        InvertedIndex invertedIndex = indexingService.getInvertedIndex();
-
-        List<Set<Integer>> docsPerTerm = queryTokens.stream()
-                .map(term -> invertedIndex.getDocumentsForTerm(term).keySet())
-                .toList();
-
-        if (docsPerTerm.isEmpty()) return Set.of();
-
-        Set<Integer> matchingDocs = new HashSet<>(docsPerTerm.getFirst());
-        for (int i = 1; i < docsPerTerm.size(); i++) {
-            matchingDocs.retainAll(docsPerTerm.get(i));
-        }
-
-        return matchingDocs;
-    }
-
-    private SearchResult createSearchResult(Document document, List<String> queryTokens) {
-        // Calculate TF-IDF score
-        double score = tfIdfScoringService.calculateTfIdfScore(document.getId().intValue(), queryTokens);
-
-        // Find which terms matched
-        List<String> docTokens = textPreprocessor.process(
-                document.getTitle() + " " + document.getContent()
-        );
-        List<String> matchedTerms = queryTokens.stream()
-                .filter(docTokens::contains)
-                .distinct()
+    private QueryResultCache.Entry rank(IndexSnapshot snapshot, Query query, SearchRequest request) {
+        int k = (int) Math.min((long) request.getOffset() + request.getLimit(), snapshot.documentCount());
+        TopKCollector collector = new TopKCollector(k);
+        // Planner: empty clauses are cut, clauses run rarest first, OR of terms uses Block-Max WAND;
+        // title, content and URL are scored in the same pass with their own norms and boosts
+        new QueryEvaluator(similarity, fieldBoosts).evaluate(snapshot, query, collector);
+
+        List<TopKCollector.ScoredDoc> page = Arrays.stream(collector.topDocs())
+                .skip(request.getOffset())
                 .toList();
-
-        // Create snippet with context
-        String snippet = createSnippet(document.getContent(), matchedTerms, 200);
-
-        // Bonus scorefor title matches
-        String titleLower = document.getTitle().toLowerCase();
-        for (String term : matchedTerms) {
-            if (titleLower.contains(term)) {
-                score *= 1.3;
-            }
-        }
-
-        return SearchResult.builder()
-                .document(toDocumentResponse(document))
-                .score(Math.round(score * 100.0) / 100.0)
-                .matchedTerms(matchedTerms)
-                .snippet(snippet)
-                .build();
+        return new QueryResultCache.Entry(page, collector.totalHits(), collector.isTotalHitsExact());
     }
 
     /**
-     * Create text snippet wit context around matched terms.
+     * Loads metadata of the page hits with one query; content is read from the index.
+     * Hits deleted from the database in the meantime are skipped.
      */
-    private String createSnippet(String content, List<String> matchedTerms, int maxLength) {
-        if (content == null || content.isBlank()) {
-            return "";
+    private List<SearchResult> hydrate(IndexSnapshot snapshot, List<TopKCollector.ScoredDoc> page,
+                                       List<String> queryTokens) {
+        if (page.isEmpty()) return List.of();
+
+        List<Long> ids = page.stream().map(hit -> (long) hit.docId()).toList();
+        Map<Long, DocumentSummary> summaries = new HashMap<>();
+        for (DocumentSummary summary : documentRepository.findSummariesByIdIn(ids)) {
+            summaries.put(summary.getId(), summary);
         }
-
-        if (matchedTerms.isEmpty()) {
-            return content.substring(0, Math.min(maxLength, content.length())) + "...";
+        int[] termIds = queryTokens.stream().mapToInt(snapshot::termId).toArray();
+
+        List<SearchResult> results = new ArrayList<>(page.size());
+        for (TopKCollector.ScoredDoc hit : page) {
+            DocumentSummary summary = summaries.get((long) hit.docId());
+            Segment segment = snapshot.segmentOf(hit.docId());
+            if (summary == null || segment == null) continue;
+            results.add(createSearchResult(summary, segment, segment.ordOf(hit.docId()), queryTokens, termIds, hit));
         }
+        return results;
+    }
 
-        String lowerContent = content.toLowerCase();
-        int firstMatch = Integer.MAX_VALUE;
-
-        // Find first occurence of any matched term
-        for (String term : matchedTerms) {
-            int index = lowerContent.indexOf(term.toLowerCase());
-            if (index != -1 && index < firstMatch) {
-                firstMatch = index;
+    private SearchResult createSearchResult(DocumentSummary summary, Segment segment, int ord,
+                                            List<String> queryTokens, int[] termIds, TopKCollector.ScoredDoc hit) {
+        String content = segment.content(ord);
+
+        // Matched terms were recorded by the evaluator while traversing postings (bit t = queryTokens[t]);
+        // only their content positions are looked up, mapped to character ranges by the stored token offsets
+        int[] offsets = segment.offsets(ord);
+        List<Highlighter.Match> matches = new ArrayList<>();
+        List<String> matchedTerms = new ArrayList<>();
+        for (int t = 0; t < termIds.length; t++) {
+            if ((hit.matchedTerms() & TopKCollector.termMask(t)) == 0) continue;
+            matchedTerms.add(queryTokens.get(t));
+
+            PostingsList postings = segment.postings(termIds[t]);
+            int index = postings.indexOf(ord);
+            if (index < 0 || offsets.length == 0) continue;
+            for (int position : postings.positions(index)) {
+                matches.add(new Highlighter.Match(offsets[2 * position], offsets[2 * position + 1], t));
             }
         }
 
-        if (firstMatch == Integer.MAX_VALUE) {
-            return content.substring(0, Math.min(maxLength, content.length())) + "...";
-        }
-
-        // Create snippet with 50 chars before match, rest after.
-        int start = Math.max(0, firstMatch - 50);
-        int end = Math.min(content.length(), start + maxLength);
-
-        String snippet = content.substring(start, end);
+        // Snippet with the best passage and highlighted matches
+        matches.sort(Comparator.comparingInt(Highlighter.Match::start));
+        String snippet = Highlighter.snippet(content, matches, SNIPPET_LENGTH);
 
-        if (start > 0) snippet = "..." + snippet;
-        if (end < content.length()) snippet = snippet + "...";
-
-        return snippet;
+        return SearchResult.builder()
+                .document(toDocumentResponse(summary, content))
+                .score(Math.round(hit.score() * 100.0) / 100.0)
+                .matchedTerms(matchedTerms)
+                .snippet(snippet)
+                .build();
     }
 
     /**
@@ -182,16 +189,16 @@ public class SearchService {
     }
 
     /**
-     * Convert Document entity to DocumentResponse DTO.
+     * Convert document projection and indexed content to DocumentResponse DTO.
      */
-    private DocumentResponse toDocumentResponse(Document document) {
+    private DocumentResponse toDocumentResponse(DocumentSummary summary, String content) {
         return DocumentResponse.builder()
-                .id(document.getId())
-                .title(document.getTitle())
-                .content(document.getContent())
-                .url(document.getUrl())
-                .createdAt(document.getCreatedAt())
-                .updatedAt(document.getUpdatedAt())
+                .id(summary.getId())
+                .title(summary.getTitle())
+                .content(content)
+                .url(summary.getUrl())
+                .createdAt(summary.getCreatedAt())
+                .updatedAt(summary.getUpdatedAt())
                 .build();
     }
 }
@@ -1,71 +1,81 @@
 package pl.pw.edu.po.search_engine.simplesearchengine.service;
 
 import org.springframework.stereotype.Service;
-import pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis.TextPreprocessor;
-import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.InvertedIndex;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.ActiveIndex;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsList;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Segment;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.TermDictionary;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.Similarity;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.TfIdfSimilarity;
 
 import java.util.*;
 
 /**
  *  * Service responsible for calculating document relevance scores using the TF-IDF algorithm.
  *  * It uses data stored in the InvertedIndex (term frequencies, document counts, etc.).
+ *  * Search ranks with the configured {@link Similarity}; this service scores single documents with TF-IDF.
  */
 @Service
 public class TfIdfScoringService {
 
-    private final InvertedIndex invertedIndex;
-    private final TextPreprocessor textPreprocessor;
+    // The index is looked up on every call: replaceIndex() swaps it
+    private final IndexingService indexingService;
+    private final Similarity similarity = new TfIdfSimilarity();
 
     public TfIdfScoringService(IndexingService  indexingService) {
-        this.invertedIndex = indexingService.getInvertedIndex();
-        this.textPreprocessor = new TextPreprocessor();
+        this.indexingService = indexingService;
     }
 
     /**
      * Calculates document relevance using TF-IDF with consistent text processing.
      * - TF uses the number of occurrences divided by the document length
-     *   (document length counted AFTER the same preprocessing pipeline).
+     *   (token count recorded by the index at indexing time).
      * - IDF uses a smoothed logarithm to avoid extreme values.
      */
     public double calculateTfIdfScore(int docId, List<String> queryTokens) {
-
-        // Defensive guards
-        int totalDocs = Math.max(1, invertedIndex.getDocumentCount());
-        String content = invertedIndex.getDocumentById(docId);
-        if (content == null || content.isBlank()) return 0.0;
-
-        // Count document length AFTER the same preprocessing as used at indexing time.
-        // This ensures TF denominator matches how postings were created.
-        int docLen = textPreprocessor.process(content).size();
-        if (docLen == 0) return 0.0;
-
         // Using unique query terms avoids overcounting repeated words in the user query.
         // (You can switch to raw list if you want repetition to matter.)
-        Set<String> uniqueQueryTerms = new LinkedHashSet<>(queryTokens);
-
-        double score = 0.0;
-        for (String term : uniqueQueryTerms) {
-            Map<Integer, List<Integer>> postings = invertedIndex.getDocumentsForTerm(term);
-            List<Integer> positions = postings.get(docId);
-            if (positions == null || positions.isEmpty()) continue;
+        // Terms missing from the dictionary cannot contribute, so they are dropped here.
+        try (ActiveIndex.Searcher searcher = indexingService.acquireSearcher()) {
+            IndexSnapshot snapshot = searcher.snapshot();
+            int[] termIds = queryTokens.stream()
+                    .mapToInt(snapshot::termId)
+                    .filter(termId -> termId != TermDictionary.NOT_FOUND)
+                    .distinct()
+                    .toArray();
+            return score(snapshot, docId, termIds);
+        }
+    }
 
-            // ----- TF (term frequency) -----
-            // Raw count of this term in the document:
-            int tfRaw = positions.size();
+    /**
+     * Same as calculateTfIdfScore(int, List) but works on already resolved, distinct term IDs.
+     */
+    public double calculateTfIdfScore(int docId, int[] queryTermIds) {
+        try (ActiveIndex.Searcher searcher = indexingService.acquireSearcher()) {
+            return score(searcher.snapshot(), docId, queryTermIds);
+        }
+    }
 
-            // Normalized TF: occurrences divided by preprocessed document length.
-            double tf = (double) tfRaw / (double) docLen;
+    private double score(IndexSnapshot snapshot, int docId, int[] queryTermIds) {
+        // Defensive guards
+        Segment segment = snapshot.segmentOf(docId);
+        if (segment == null) return 0.0;
+        int ord = segment.ordOf(docId);
 
-            // ----- IDF (inverse document frequency) -----
-            // Document frequency: in how many documents the term appears
-            int df = Math.max(1, postings.size());
+        // Document length is the token count stored at indexing time (same pipeline as the postings),
+        // so scoring is a lookup instead of re-analyzing the content.
+        int docLen = segment.docLength(ord);
+        if (docLen == 0) return 0.0;
 
-            // Smoothed IDF to avoid division-by-zero and dampen extremes:
-            // idf = ln(1 + N / df)
-            double idf = Math.log(1.0 + ((double) totalDocs / (double) df));
+        double score = 0.0;
+        for (int termId : queryTermIds) {
+            PostingsList postings = segment.postings(termId);
+            int index = postings.indexOf(ord);
+            if (index < 0) continue;
 
-            // ----- TF-IDF -----
-            score += tf * idf;
+            // tf = occurrences / document length, idf = ln(1 + N / df)
+            score += similarity.scorer(snapshot, termId).score(postings.freq(index), docLen);
         }
 
         return score;
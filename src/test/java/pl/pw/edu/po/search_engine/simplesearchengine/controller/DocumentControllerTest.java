@@ -0,0 +1,118 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import pl.pw.edu.po.search_engine.simplesearchengine.dto.BulkImportResult;
+import pl.pw.edu.po.search_engine.simplesearchengine.dto.DocumentRequest;
+import pl.pw.edu.po.search_engine.simplesearchengine.service.DocumentService;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests of the bulk import endpoint: both payload formats are streamed into DocumentService.
+ */
+@WebMvcTest(DocumentController.class)
+class DocumentControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private DocumentService documentService;
+
+    private final List<DocumentRequest> imported = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        reset(documentService);
+        imported.clear();
+        when(documentService.importDocuments(any())).thenAnswer(invocation -> {
+            Iterator<DocumentRequest> documents = invocation.getArgument(0);
+            documents.forEachRemaining(imported::add);
+            return BulkImportResult.builder()
+                    .documentsReceived(imported.size())
+                    .documentsCreated(imported.size())
+                    .duplicatesSkipped(0)
+                    .invalidSkipped(0)
+                    .importTimeMs(1L)
+                    .build();
+        });
+    }
+
+    @Test
+    void testBulkImportOfJsonArray() throws Exception {
+        String body = """
+                [
+                  {"title": "Java", "content": "Java programming", "url": "https://example.com/java"},
+                  {"title": "Python", "content": "Python programming", "url": "https://example.com/python"}
+                ]
+                """;
+
+        mockMvc.perform(post("/api/documents/bulk").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documentsReceived").value(2))
+                .andExpect(jsonPath("$.documentsCreated").value(2));
+
+        assertEquals(2, imported.size());
+        assertEquals("https://example.com/python", imported.get(1).getUrl());
+    }
+
+    @Test
+    void testBulkImportOfNdjson() throws Exception {
+        String body = """
+                {"title": "Java", "content": "Java programming", "url": "https://example.com/java"}
+                {"title": "Python", "content": "Python programming", "url": "https://example.com/python"}
+                {"title": "Go", "content": "Go programming", "url": "https://example.com/go"}
+                """;
+
+        mockMvc.perform(post("/api/documents/bulk").contentType(MediaType.APPLICATION_NDJSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documentsReceived").value(3));
+
+        assertEquals(List.of("Java", "Python", "Go"), imported.stream().map(DocumentRequest::getTitle).toList());
+        verify(documentService, never()).waitUntilSearchable();
+    }
+
+    @Test
+    void testBulkImportWaitsForIndexingOnRequest() throws Exception {
+        when(documentService.waitUntilSearchable()).thenReturn(true);
+
+        mockMvc.perform(post("/api/documents/bulk").param("waitForIndexing", "true")
+                        .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documentsReceived").value(0));
+
+        verify(documentService).waitUntilSearchable();
+    }
+
+    @Test
+    void testIndexingTimeoutIsReportedAsAccepted() throws Exception {
+        when(documentService.waitUntilSearchable()).thenReturn(false);
+
+        mockMvc.perform(post("/api/documents/bulk").param("waitForIndexing", "true")
+                        .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.documentsReceived").value(0));
+    }
+
+    @Test
+    void testBulkImportRejectsMalformedJson() throws Exception {
+        mockMvc.perform(post("/api/documents/bulk").contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"url\": \"https://example.com/a\", \"content\": \"a\"}\n{\"url\": "))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,78 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StemCacheTest {
+
+    @Test
+    void testHitsAndMissesAreCounted() {
+        StemCache cache = new StemCache(16);
+        char[] word = "running".toCharArray();
+
+        assertNull(cache.get(word, word.length, "running".hashCode()));
+        cache.put(word, word.length, "running".hashCode(), "run".toCharArray(), 3);
+        assertArrayEquals("run".toCharArray(), cache.get(word, word.length, "running".hashCode()));
+
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(0.5, cache.hitRate());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testLookupComparesOnlyTheGivenLength() {
+        StemCache cache = new StemCache(16);
+        cache.put("dogs".toCharArray(), 4, "dogs".hashCode(), "dog".toCharArray(), 3);
+
+        // Buffer longer than the word, with leftovers of a previous token behind it
+        char[] buffer = "dogsxyz".toCharArray();
+        assertArrayEquals("dog".toCharArray(), cache.get(buffer, 4, "dogs".hashCode()));
+        assertNull(cache.get(buffer, 3, "dog".hashCode()));
+    }
+
+    @Test
+    void testSizeIsBounded() {
+        StemCache cache = new StemCache(100);
+        assertEquals(64, cache.capacity());
+
+        for (int i = 0; i < 10_000; i++) {
+            char[] word = ("word" + i).toCharArray();
+            cache.put(word, word.length, ("word" + i).hashCode(), word, word.length);
+        }
+        assertTrue(cache.size() <= 64, "Cache should never hold more than its capacity");
+    }
+
+    @Test
+    void testInvalidSizeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new StemCache(0));
+    }
+
+    @Test
+    void testSharedCacheGivesSameAnalysisAcrossThreads() throws Exception {
+        TextPreprocessor uncached = new TextPreprocessor();
+        TextPreprocessor cached = new TextPreprocessor(new StemCache(8));
+        String text = "Running runners ran quickly through running streams and connected connections";
+        List<String> expected = uncached.process(text);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                results.add(executor.submit(() -> cached.process(text)));
+            }
+            for (Future<List<String>> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
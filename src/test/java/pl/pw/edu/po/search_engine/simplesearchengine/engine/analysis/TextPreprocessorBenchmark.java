@@ -0,0 +1,93 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Manual micro-benchmark of the analysis paths, not part of the test suite:
+ * compares the String based process() / analyze() with the sink based tokenize(), without and with a stem cache,
+ * by throughput and by bytes allocated per analyzed character.
+ * Run the main method with a warmed up JIT in mind (e.g. -Xms1g -Xmx1g), the first round is warmup.
+ */
+public class TextPreprocessorBenchmark {
+
+    private static final int DOCUMENTS = 2_000;
+    private static final int WORDS_PER_DOCUMENT = 400;
+    private static final int ROUNDS = 5;
+
+    private static final String[] VOCABULARY = {
+            "the", "search", "engines", "index", "documents", "and", "rank", "results", "by", "relevance",
+            "Running", "QUERIES", "with", "stemming", "stop", "words", "is", "cheap", "when", "nothing",
+            "allocates", "per", "token", "Java", "2024", "performance", "of", "analysis", "pipelines", "matters"
+    };
+
+    private static volatile long blackhole;
+
+    public static void main(String[] args) {
+        List<String> texts = texts();
+        long characters = texts.stream().mapToLong(String::length).sum();
+        TextPreprocessor preprocessor = new TextPreprocessor();
+        TextPreprocessor cached = new TextPreprocessor(new StemCache(4096));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            String label = round == 0 ? "warmup " : "round " + round;
+            measure(label + " process() ", characters, () -> {
+                long sum = 0;
+                for (String text : texts) {
+                    sum += preprocessor.process(text).size();
+                }
+                return sum;
+            });
+            measure(label + " analyze() ", characters, () -> {
+                long sum = 0;
+                for (String text : texts) {
+                    sum += preprocessor.analyze(text).size();
+                }
+                return sum;
+            });
+            measure(label + " tokenize()", characters, () -> {
+                long[] sum = new long[1];
+                TextPreprocessor.TokenSink sink = (term, length, start, end) -> sum[0] += term[0] + length;
+                for (String text : texts) {
+                    preprocessor.tokenize(text, sink);
+                }
+                return sum[0];
+            });
+            measure(label + " cached    ", characters, () -> {
+                long[] sum = new long[1];
+                TextPreprocessor.TokenSink sink = (term, length, start, end) -> sum[0] += term[0] + length;
+                for (String text : texts) {
+                    cached.tokenize(text, sink);
+                }
+                return sum[0];
+            });
+        }
+    }
+
+    private interface Run {
+        long run();
+    }
+
+    private static void measure(String label, long characters, Run run) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        blackhole += run.run();
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.printf("%s %8.1f MB/s %8.3f bytes allocated/char%n",
+                label, characters * 1e3 / nanos, (double) allocated / characters);
+    }
+
+    private static List<String> texts() {
+        Random random = new Random(42);
+        return java.util.stream.IntStream.range(0, DOCUMENTS).mapToObj(i -> {
+            StringBuilder text = new StringBuilder();
+            for (int w = 0; w < WORDS_PER_DOCUMENT; w++) {
+                text.append(VOCABULARY[random.nextInt(VOCABULARY.length)]).append(w % 12 == 11 ? ". " : " ");
+            }
+            return text.toString();
+        }).toList();
+    }
+}
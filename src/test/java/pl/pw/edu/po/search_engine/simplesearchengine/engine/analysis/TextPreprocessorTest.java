@@ -3,7 +3,11 @@ package pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -138,5 +142,58 @@ class TextPreprocessorTest {
         assertFalse(result.isEmpty());
         assertTrue(result.size() >= 5); // machine, learn, transform, way, we, process, data (minus stop words)
     }
-}
 
+    @Test
+    void testAnalyzeKeepsCharacterOffsetsOfOriginalText() {
+        String input = "The Running-dogs, são 42!";
+        List<TextPreprocessor.Token> tokens = preprocessor.analyze(input);
+
+        assertEquals(List.of(
+                new TextPreprocessor.Token("run", 4, 11),
+                new TextPreprocessor.Token("dog", 12, 16),
+                new TextPreprocessor.Token("s", 18, 19),
+                new TextPreprocessor.Token("o", 20, 21),
+                new TextPreprocessor.Token("42", 22, 24)), tokens);
+        assertEquals("Running", input.substring(tokens.get(0).start(), tokens.get(0).end()));
+        assertEquals(preprocessor.process(input), tokens.stream().map(TextPreprocessor.Token::term).toList());
+    }
+
+    @Test
+    void testTokenizeHandsTermsToSinkInReusedBuffer() {
+        String input = "THE Quick foxes and AN extraordinarilylongwordthatdoesnotfitthebuffer jumped";
+        List<String> terms = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        Set<char[]> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+        preprocessor.tokenize(input, (term, length, start, end) -> {
+            terms.add(new String(term, 0, length));
+            offsets.add(start);
+            offsets.add(end);
+            buffers.add(term);
+        });
+
+        // Upper case stop words are dropped, long tokens grow the buffer
+        assertEquals(List.of("quick", "fox", "extraordinarilylongwordthatdoesnotfitthebuff", "jump"), terms);
+        assertEquals(preprocessor.process(input), terms);
+        assertEquals(List.of(4, 9, 10, 15, 23, 69, 70, 76), offsets);
+        assertTrue(buffers.size() < terms.size(), "Tokens should share a buffer");
+    }
+
+    @Test
+    void testTokenizeIgnoresEmptyInput() {
+        preprocessor.tokenize(null, (term, length, start, end) -> fail("No tokens expected"));
+        preprocessor.tokenize("  ,; the ", (term, length, start, end) -> fail("No tokens expected"));
+    }
+
+    @Test
+    void testStemCacheAnswersRepeatedWords() {
+        StemCache stemCache = new StemCache(1024);
+        TextPreprocessor cached = new TextPreprocessor(stemCache);
+        String input = "Running dogs, running cats and running horses";
+
+        assertEquals(preprocessor.process(input), cached.process(input));
+        assertEquals(preprocessor.analyze(input), cached.analyze(input));
+        // 6 tokens per pass: running, dogs, cats, horses are stemmed once, everything else is a hit
+        assertEquals(4, stemCache.missCount());
+        assertEquals(8, stemCache.hitCount());
+    }
+}
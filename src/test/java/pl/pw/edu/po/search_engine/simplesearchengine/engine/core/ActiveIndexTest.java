@@ -0,0 +1,140 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ActiveIndexTest {
+
+    @Test
+    void testSearcherKeepsItsIndexAcrossSwap() {
+        InvertedIndex old = new InvertedIndex();
+        old.addDocument(1, "Old", List.of("old"));
+        ActiveIndex active = new ActiveIndex(old);
+
+        try (ActiveIndex.Searcher searcher = active.acquire()) {
+            InvertedIndex rebuilt = new InvertedIndex();
+            rebuilt.addDocument(2, "New", List.of("new"));
+            assertSame(old, active.swap(rebuilt));
+
+            // In-flight request still sees the old documents, new requests see the new ones
+            assertSame(old, searcher.index());
+            assertEquals(1, searcher.snapshot().documentCount());
+            assertNotNull(searcher.snapshot().segmentOf(1));
+            try (ActiveIndex.Searcher next = active.acquire()) {
+                assertSame(rebuilt, next.index());
+                assertNotNull(next.snapshot().segmentOf(2));
+            }
+        }
+    }
+
+    @Test
+    void testSearcherDoesNotSeeLaterDeletes() {
+        InvertedIndex index = new InvertedIndex();
+        for (int docId = 1; docId <= 4; docId++) {
+            index.bufferDocument(docId, "Doc " + docId, List.of("doc", docId % 2 == 0 ? "even" : "odd"));
+        }
+        index.refresh();
+        ActiveIndex active = new ActiveIndex(index);
+
+        try (ActiveIndex.Searcher searcher = active.acquire()) {
+            IndexSnapshot snapshot = searcher.snapshot();
+            int even = snapshot.termId("even");
+            index.removeDocument(2);
+
+            // Live documents and statistics of the pinned snapshot stay as they were
+            assertNotNull(snapshot.segmentOf(2));
+            assertEquals(4, snapshot.documentCount());
+            assertEquals(2, snapshot.docFreq(even));
+            assertNull(index.snapshot().segmentOf(2));
+            assertEquals(3, index.snapshot().documentCount());
+        }
+    }
+
+    @Test
+    void testReplacedIndexIsClosedAfterLastSearcher() {
+        ClosingIndex old = new ClosingIndex();
+        ActiveIndex active = new ActiveIndex(old);
+
+        ActiveIndex.Searcher first = active.acquire();
+        ActiveIndex.Searcher second = active.acquire();
+        assertEquals(2, active.activeSearchers());
+
+        active.swap(new InvertedIndex());
+        first.close();
+        first.close();
+        assertFalse(old.closed, "Index in use must stay open");
+
+        second.close();
+        assertTrue(old.closed, "Index should be closed after the last searcher");
+        assertEquals(0, active.activeSearchers());
+    }
+
+    @Test
+    void testUnusedIndexIsClosedOnSwap() {
+        ClosingIndex old = new ClosingIndex();
+        ActiveIndex active = new ActiveIndex(old);
+
+        active.swap(new InvertedIndex());
+
+        assertTrue(old.closed);
+    }
+
+    @Test
+    void testSearchesNeverSeeAnEmptyIndexDuringSwaps() throws Exception {
+        ActiveIndex active = new ActiveIndex(indexWith(100));
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService readers = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> results = List.of(
+                    readers.submit(() -> minimumDocumentCount(active, done)),
+                    readers.submit(() -> minimumDocumentCount(active, done)),
+                    readers.submit(() -> minimumDocumentCount(active, done)));
+            for (int i = 0; i < 50; i++) {
+                active.swap(indexWith(100));
+            }
+            done.set(true);
+            for (Future<Integer> result : results) {
+                assertEquals(100, result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    private static int minimumDocumentCount(ActiveIndex active, AtomicBoolean done) {
+        int minimum = Integer.MAX_VALUE;
+        while (!done.get()) {
+            try (ActiveIndex.Searcher searcher = active.acquire()) {
+                minimum = Math.min(minimum, searcher.snapshot().documentCount());
+            }
+        }
+        return minimum;
+    }
+
+    private static InvertedIndex indexWith(int documents) {
+        InvertedIndex index = new InvertedIndex();
+        for (int docId = 0; docId < documents; docId++) {
+            index.bufferDocument(docId, "Doc " + docId, List.of("doc"));
+        }
+        index.refresh();
+        return index;
+    }
+
+    private static final class ClosingIndex extends InvertedIndex {
+        boolean closed;
+
+        @Override
+        public synchronized void close() {
+            super.close();
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testOpenEmptyDirectoryReturnsNull() throws IOException {
+        assertNull(new IndexStore(directory.resolve("missing")).open());
+    }
+
+    @Test
+    void testCommitAndOpenRoundTrip() throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        index.addDocument(3, "Java programming", List.of("java", "program"));
+        index.addDocument(8, null, "Zażółć java java", List.of("zażółć", "java", "java"), new int[]{0, 6, 7, 11, 12, 16});
+
+        new IndexStore(directory).commit(index.snapshot(), Map.of("documentCount", "2"));
+
+        IndexStore.Commit commit = new IndexStore(directory).open();
+        assertNotNull(commit);
+        assertEquals(Map.of("documentCount", "2"), commit.userData());
+
+        InvertedIndex restored = new InvertedIndex();
+        restored.restore(commit.snapshot());
+
+        assertEquals(2, restored.getDocumentCount());
+        assertEquals("Zażółć java java", restored.getDocumentById(8));
+        assertEquals(index.getTermId("program"), restored.getTermId("program"));
+        assertEquals(Map.of(3, List.of(0), 8, List.of(1, 2)), restored.getDocumentsForTerm("java"));
+        assertTrue(restored.snapshot().segments().get(0).isMapped());
+        Segment segment = restored.snapshot().segmentOf(8);
+        assertEquals(3, segment.docLength(segment.ordOf(8)));
+        assertArrayEquals(new int[]{0, 6, 7, 11, 12, 16}, segment.offsets(segment.ordOf(8)));
+        Segment other = restored.snapshot().segmentOf(3);
+        assertArrayEquals(new int[0], other.offsets(other.ordOf(3)));
+
+        // New documents continue after the highest restored ID
+        assertEquals(9, restored.addDocument("Next", List.of("next")));
+    }
+
+    @Test
+    void testCommitReusesSegmentFilesAndDeletesOldOnes() throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        index.addDocument(1, "Doc 1", List.of("hello"));
+        IndexStore store = new IndexStore(directory);
+        store.commit(index.snapshot(), Map.of());
+
+        index.addDocument(2, "Doc 2", List.of("world"));
+        store.commit(index.snapshot(), Map.of());
+        assertEquals(2, countSegmentFiles());
+
+        index.removeDocument(1);
+        index.removeDocument(2);
+        store.commit(index.snapshot(), Map.of());
+        assertEquals(0, countSegmentFiles());
+
+        IndexStore.Commit commit = new IndexStore(directory).open();
+        assertEquals(0, commit.snapshot().documentCount());
+    }
+
+    @Test
+    void testFieldPostingsAndLengthsRoundTrip() throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        index.addDocument(4, "Spring Boot", "jpa", Map.of(
+                Field.TITLE, List.of("spring", "boot"),
+                Field.CONTENT, List.of("jpa"),
+                Field.URL, List.of("spring", "io")), null);
+        new IndexStore(directory).commit(index.snapshot(), Map.of());
+
+        IndexSnapshot restored = new IndexStore(directory).open().snapshot();
+        Segment segment = restored.segments().get(0);
+        assertTrue(segment.isMapped());
+        assertEquals(2, segment.docLength(Field.TITLE, 0));
+        assertEquals(1, segment.docLength(Field.CONTENT, 0));
+        assertEquals(1, restored.docFreq(Field.TITLE, restored.termId("boot")));
+        assertEquals(1, restored.docFreq(Field.URL, restored.termId("spring")));
+        assertEquals(0, restored.docFreq(Field.CONTENT, restored.termId("spring")));
+        assertEquals(List.of(1), positions(segment.postings(Field.TITLE, restored.termId("boot"))));
+    }
+
+    private static List<Integer> positions(PostingsList postings) {
+        List<Integer> positions = new ArrayList<>();
+        for (int position : postings.positions(0)) {
+            positions.add(position);
+        }
+        return positions;
+    }
+
+    private long countSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(".seg")).count();
+        }
+    }
+}
@@ -224,5 +224,385 @@ class InvertedIndexTest {
         assertEquals(docId, index.getDocumentsForTerm("machine").keySet().iterator().next());
         assertEquals(docId, index.getDocumentsForTerm("learning").keySet().iterator().next());
     }
-}
 
+    @Test
+    void testBufferedDocumentsInvisibleUntilRefresh() {
+        index.bufferDocument(5, "Buffered doc", List.of("buffer"));
+
+        assertEquals(0, index.getDocumentCount());
+        assertTrue(index.getDocumentsForTerm("buffer").isEmpty());
+
+        index.refresh();
+
+        assertEquals(1, index.getDocumentCount());
+        assertEquals("Buffered doc", index.getDocumentById(5));
+    }
+
+    @Test
+    void testFullBufferIsNotPublishedWithoutRefresh() {
+        for (int docId = 0; docId < 1500; docId++) {
+            index.bufferDocument(docId, "Doc " + docId, List.of("buffered"));
+        }
+
+        assertTrue(index.isBufferFull());
+        assertEquals(0, index.getDocumentCount(), "Only refresh() publishes");
+
+        index.refresh();
+        assertFalse(index.isBufferFull());
+        assertEquals(1500, index.getDocumentCount());
+    }
+
+    @Test
+    void testUpdatedDocumentStaysSearchableUntilRefresh() {
+        index.addDocument(1, "Old version", List.of("old"));
+
+        index.bufferDocument(1, "New version", List.of("new"));
+
+        // The old version is replaced only when the new one is published
+        assertEquals(1, index.getDocumentCount());
+        assertEquals("Old version", index.getDocumentById(1));
+        assertEquals(List.of(1), List.copyOf(index.getDocumentsForTerm("old").keySet()));
+
+        index.refresh();
+
+        assertEquals(1, index.getDocumentCount());
+        assertEquals("New version", index.getDocumentById(1));
+        assertTrue(index.getDocumentsForTerm("old").isEmpty());
+        assertEquals(List.of(1), List.copyOf(index.getDocumentsForTerm("new").keySet()));
+    }
+
+    @Test
+    void testBufferedDeletesArePublishedWithTheRefresh() {
+        index.addDocument(1, "Doc 1", List.of("hello"));
+        index.addDocument(2, "Doc 2", List.of("hello"));
+        IndexSnapshot before = index.snapshot();
+
+        index.bufferDocument(3, "Doc 3", List.of("hello"));
+        index.bufferDelete(1);
+        index.bufferDelete(2);
+        index.bufferDocument(2, "Doc 2 again", List.of("hello"));
+
+        assertSame(before, index.snapshot(), "Nothing is published before refresh()");
+        assertEquals("Doc 1", index.getDocumentById(1));
+
+        index.refresh();
+
+        assertEquals(2, index.getDocumentCount());
+        assertNull(index.getDocumentById(1));
+        assertEquals("Doc 2 again", index.getDocumentById(2));
+        assertEquals(List.of(2, 3), index.getDocumentsForTerm("hello").keySet().stream().sorted().toList());
+    }
+
+    @Test
+    void testSnapshotIsNotAffectedByLaterWrites() {
+        index.addDocument(1, "Doc 1", List.of("hello"));
+        IndexSnapshot snapshot = index.snapshot();
+
+        index.addDocument(2, "Doc 2", List.of("hello"));
+        index.removeDocument(1);
+
+        assertEquals(1, snapshot.documentCount());
+        assertTrue(snapshot.segmentOf(2) == null, "Documents added later are not visible");
+        // Deletes publish a new segment version, the older snapshot still sees the document
+        Segment segment = snapshot.segmentOf(1);
+        assertNotNull(segment);
+        assertFalse(segment.isDeleted(segment.ordOf(1)));
+        assertEquals(1, index.getDocumentCount());
+        assertNull(index.getDocumentById(1));
+    }
+
+    @Test
+    void testRemoveDocumentFromSegment() {
+        index.addDocument(1, "Doc 1", List.of("hello", "world"));
+        index.addDocument(2, "Doc 2", List.of("hello"));
+
+        index.removeDocument(1);
+
+        assertEquals(1, index.getDocumentCount());
+        assertEquals(List.of(2), List.copyOf(index.getDocumentsForTerm("hello").keySet()));
+        assertTrue(index.getDocumentsForTerm("world").isEmpty());
+    }
+
+    @Test
+    void testReAddingDocumentReplacesIt() {
+        index.addDocument(7, "Old", List.of("old"));
+        index.addDocument(7, "New", List.of("new"));
+
+        assertEquals(1, index.getDocumentCount());
+        assertEquals("New", index.getDocumentById(7));
+        assertTrue(index.getDocumentsForTerm("old").isEmpty());
+    }
+
+    @Test
+    void testBackgroundMergeCombinesSmallSegments() throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            index.addDocument(i, "Doc " + i, List.of("common", "term" + i, "common"));
+        }
+        index.waitForMerges();
+
+        assertTrue(index.getSegmentCount() < 50, "Small segments should have been merged");
+        assertEquals(50, index.getDocumentCount());
+
+        Map<Integer, List<Integer>> postings = index.getDocumentsForTerm("common");
+        assertEquals(50, postings.size());
+        assertEquals(List.of(0, 2), postings.get(42), "Positions survive merging");
+    }
+
+    @Test
+    void testForceMerge() throws InterruptedException {
+        for (int i = 0; i < 25; i++) {
+            index.addDocument(i * 2, "Doc " + i, List.of("even"));
+        }
+        index.removeDocument(10);
+
+        index.forceMerge();
+
+        assertEquals(1, index.getSegmentCount());
+        assertEquals(24, index.getDocumentCount());
+        assertNull(index.getDocumentById(10));
+        assertEquals("Doc 24", index.getDocumentById(48));
+    }
+
+    @Test
+    void testMergeKeepsPostingsConsistentWithNewIds() {
+        index.addDocument("Doc 1", List.of("hello"));
+
+        InvertedIndex otherIndex = new InvertedIndex();
+        otherIndex.addDocument("Doc 2", List.of("python", "hello", "python"));
+
+        index.merge(otherIndex);
+
+        Map<Integer, List<Integer>> python = index.getDocumentsForTerm("python");
+        assertEquals(1, python.size());
+        int mergedId = python.keySet().iterator().next();
+        assertEquals("Doc 2", index.getDocumentById(mergedId));
+        assertEquals(List.of(0, 2), python.get(mergedId));
+        assertEquals(2, index.getDocumentsForTerm("hello").size());
+    }
+
+    @Test
+    void testMergeKeepingIdsReplacesDocumentsAndKeepsPositions() throws InterruptedException {
+        index.addDocument(5, "Old 5", List.of("old", "hello"));
+        index.addDocument(6, "Doc 6", List.of("hello"));
+
+        // Built separately: own term dictionary, term IDs differ from this index
+        InvertedIndex part = new InvertedIndex();
+        part.addDocument(9, "Doc 9", List.of("zebra", "python", "zebra"));
+        part.addDocument(5, "New 5", List.of("python", "hello", "python"));
+        part.addDocument(7, "Deleted", List.of("python"));
+        part.removeDocument(7);
+
+        index.merge(part, true);
+
+        Map<Integer, List<Integer>> expectedPython = Map.of(5, List.of(0, 2), 9, List.of(1));
+        assertEquals(expectedPython, index.getDocumentsForTerm("python"));
+        assertEquals(Map.of(5, List.of(1), 6, List.of(0)), index.getDocumentsForTerm("hello"));
+        assertTrue(index.getDocumentsForTerm("old").isEmpty());
+        assertEquals("New 5", index.getDocumentById(5));
+        assertNull(index.getDocumentById(7), "Deleted documents should not be copied");
+        assertEquals(3, index.getDocumentCount());
+
+        index.forceMerge();
+        assertEquals(expectedPython, index.getDocumentsForTerm("python"));
+        assertEquals(Map.of(9, List.of(0, 2)), index.getDocumentsForTerm("zebra"));
+        assertEquals(10, index.addDocument("Next", List.of("next")));
+    }
+
+    @Test
+    void testMergingDisjointSegmentsMatchesMergingInterleavedOnes() throws InterruptedException {
+        // Same documents: in ID ranges 0-19, 20-39, ... (concatenated) and split by parity (k-way merged)
+        InvertedIndex interleaved = new InvertedIndex();
+        for (int parity = 0; parity < 2; parity++) {
+            for (int docId = parity; docId < 100; docId += 2) {
+                interleaved.bufferDocument(docId, "Doc " + docId, tokens(docId));
+            }
+            interleaved.refresh();
+        }
+        for (int docId = 0; docId < 100; docId++) {
+            index.bufferDocument(docId, "Doc " + docId, tokens(docId));
+            if (docId % 20 == 19) {
+                index.refresh();
+            }
+        }
+        for (int docId = 3; docId < 100; docId += 7) {
+            index.removeDocument(docId);
+            interleaved.removeDocument(docId);
+        }
+
+        index.forceMerge();
+        interleaved.forceMerge();
+
+        assertEquals(1, index.getSegmentCount());
+        assertEquals(interleaved.getDocumentCount(), index.getDocumentCount());
+        for (String term : List.of("all", "even", "odd", "five", "last")) {
+            assertEquals(interleaved.getDocumentsForTerm(term), index.getDocumentsForTerm(term), term);
+        }
+        Segment segment = index.snapshot().segments().get(0);
+        for (int ord = 0; ord < segment.maxDoc(); ord++) {
+            assertEquals("Doc " + segment.docId(ord), segment.content(ord));
+            assertEquals(tokens(segment.docId(ord)).size(), segment.docLength(ord));
+        }
+    }
+
+    private static List<String> tokens(int docId) {
+        List<String> tokens = new java.util.ArrayList<>(List.of("all", docId % 2 == 0 ? "even" : "odd"));
+        if (docId % 5 == 0) tokens.add("five");
+        tokens.add("all");
+        if (docId == 99) tokens.add("last");
+        return tokens;
+    }
+
+    @Test
+    void testRemoveDocumentOnlyTombstonesIt() {
+        // One segment, deleting a quarter of it stays below the expunge-deletes ratio
+        for (int docId = 1; docId <= 4; docId++) {
+            index.bufferDocument(docId, "Doc " + docId, List.of("hello"));
+        }
+        index.refresh();
+        Segment before = index.snapshot().segmentOf(1);
+
+        index.removeDocument(1);
+
+        // Postings are untouched, the document is only marked as deleted in a new version of the segment
+        Segment segment = index.snapshot().segments().stream().filter(before::sameCore).findFirst().orElseThrow();
+        assertEquals(4, segment.postings(index.getTermId("hello")).size());
+        assertTrue(segment.isDeleted(segment.ordOf(1)));
+        assertFalse(before.isDeleted(before.ordOf(1)));
+        assertEquals(3, index.getDocumentCount());
+        assertEquals(List.of(2, 3, 4), List.copyOf(index.getDocumentsForTerm("hello").keySet()));
+    }
+
+    @Test
+    void testDeletesWhileMergingAreKept() throws InterruptedException {
+        // Every add publishes a segment, so merges run while the deletes replace their sources
+        for (int i = 0; i < 200; i++) {
+            index.addDocument(i, "Doc " + i, List.of("common"));
+            if (i % 2 == 1) {
+                index.removeDocument(i - 1);
+            }
+        }
+        index.waitForMerges();
+
+        assertEquals(100, index.getDocumentCount());
+        assertTrue(index.getSegmentCount() < 200, "Segments should have been merged");
+        for (int docId : index.getDocumentsForTerm("common").keySet()) {
+            assertEquals(1, docId % 2, "Deleted document " + docId + " came back");
+        }
+    }
+
+    @Test
+    void testMergePurgesTombstonedDocuments() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            index.addDocument(i, "Doc " + i, List.of("common"));
+        }
+        for (int i = 0; i < 20; i += 2) {
+            index.removeDocument(i);
+        }
+
+        index.forceMerge();
+
+        Segment merged = index.snapshot().segments().get(0);
+        assertEquals(10, merged.maxDoc());
+        assertEquals(0, merged.deletedCount());
+        assertEquals(10, merged.postings(index.getTermId("common")).size());
+        assertEquals(10, index.getDocumentCount());
+    }
+
+    @Test
+    void testSegmentWithManyDeletesIsExpunged() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            index.bufferDocument(i, "Doc " + i, List.of("common"));
+        }
+        index.refresh();
+
+        // 30% deleted reaches the default expunge threshold
+        for (int i = 0; i < 3; i++) {
+            index.removeDocument(i);
+        }
+        index.waitForMerges();
+
+        List<Segment> segments = index.snapshot().segments();
+        assertEquals(1, segments.size());
+        assertEquals(7, segments.get(0).maxDoc(), "Deleted documents should be physically removed");
+        assertEquals(0, segments.get(0).deletedCount());
+    }
+
+    @Test
+    void testDocumentLengthsSurviveMerging() throws InterruptedException {
+        index.addDocument(1, "Doc 1", List.of("a", "b", "c"));
+        index.addDocument(2, "Doc 2", List.of("a"));
+        index.addDocument(3, "Doc 3", List.of());
+
+        index.forceMerge();
+
+        Segment segment = index.snapshot().segments().get(0);
+        assertEquals(3, segment.docLength(segment.ordOf(1)));
+        assertEquals(1, segment.docLength(segment.ordOf(2)));
+        assertEquals(0, segment.docLength(segment.ordOf(3)));
+    }
+
+    @Test
+    void testFieldsAreIndexedSeparately() throws InterruptedException {
+        index.addDocument(1, "Java Guide", "python snakes", Map.of(
+                Field.TITLE, List.of("java", "guid"),
+                Field.CONTENT, List.of("python", "snake"),
+                Field.URL, List.of("exampl", "com", "java")), null);
+        index.addDocument(2, "Other", "java java", List.of("java", "java"));
+        index.forceMerge();
+
+        Segment segment = index.snapshot().segments().get(0);
+        int java = index.getTermId("java");
+        assertEquals(1, segment.postings(Field.TITLE, java).size());
+        assertEquals(segment.ordOf(1), segment.postings(Field.TITLE, java).docId(0));
+        assertEquals(1, segment.postings(Field.URL, java).size());
+        assertEquals(2, segment.docLength(Field.TITLE, segment.ordOf(1)));
+        assertEquals(3, segment.docLength(Field.URL, segment.ordOf(1)));
+        assertEquals(0, segment.docLength(Field.TITLE, segment.ordOf(2)));
+        // Term IDs are shared, plain postings are the content
+        assertEquals(Map.of(2, List.of(0, 1)), index.getDocumentsForTerm("java"));
+        assertEquals(1.0, index.snapshot().averageDocLength(Field.TITLE));
+    }
+
+    @Test
+    void testPartialIndexesBuiltOnThreadsKeepTheirIds() throws Exception {
+        index.addDocument(3, "Old version", List.of("old"));
+
+        List<PartialIndex> partialIndexes = List.of(index.newPartialIndex(), index.newPartialIndex());
+        List<Thread> threads = new java.util.ArrayList<>();
+        for (int t = 0; t < partialIndexes.size(); t++) {
+            PartialIndex partialIndex = partialIndexes.get(t);
+            int first = t;
+            threads.add(new Thread(() -> {
+                // Interleaved IDs: thread 0 gets the even documents, thread 1 the odd ones
+                for (int docId = first; docId < 12_000; docId += 2) {
+                    partialIndex.addDocument(docId, null, "Doc " + docId,
+                            Map.of(Field.CONTENT, List.of("all", docId % 3 == 0 ? "three" : "other")), null);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(6000, partialIndexes.get(0).documentCount());
+
+        index.addPartialIndexes(partialIndexes);
+        index.forceMerge();
+
+        assertEquals(12_000, index.getDocumentCount());
+        assertEquals("Doc 3", index.getDocumentById(3), "Previous version should be replaced");
+        assertTrue(index.getDocumentsForTerm("old").isEmpty());
+        assertEquals(4000, index.getDocumentsForTerm("three").size());
+        assertEquals(List.of(1), index.getDocumentsForTerm("three").get(9));
+        assertEquals(12_000, index.addDocument("Next", List.of("next")), "New IDs should follow the published ones");
+    }
+
+    @Test
+    void testPartialIndexOfClearedIndexIsRejected() {
+        PartialIndex partialIndex = index.newPartialIndex();
+        partialIndex.addDocument(1, null, "Doc", Map.of(Field.CONTENT, List.of("doc")), null);
+        index.clear();
+
+        assertThrows(IllegalStateException.class, () -> index.addPartialIndexes(List.of(partialIndex)));
+    }
+}
@@ -0,0 +1,102 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PostingsList and PostingsIterator.
+ * Tests building, sorting, removal and compressed positions decoding.
+ */
+class PostingsListTest {
+
+    @Test
+    void testEmptyBuilderReturnsEmptyList() {
+        PostingsList postings = new PostingsList.Builder().build();
+
+        assertSame(PostingsList.EMPTY, postings);
+        assertTrue(postings.isEmpty());
+        assertEquals(PostingsIterator.NO_MORE_DOCS, postings.iterator().nextDoc());
+    }
+
+    @Test
+    void testFrequenciesAndPositions() {
+        PostingsList.Builder builder = new PostingsList.Builder();
+        builder.addOccurrence(3, 0);
+        builder.addOccurrence(3, 7);
+        builder.addOccurrence(3, 300);
+        builder.addOccurrence(5, 2);
+
+        PostingsList postings = builder.build();
+
+        assertEquals(2, postings.size());
+        assertEquals(3, postings.docId(0));
+        assertEquals(3, postings.freq(0));
+        assertArrayEquals(new int[]{0, 7, 300}, postings.positions(0));
+        assertArrayEquals(new int[]{2}, postings.positions(1));
+    }
+
+    @Test
+    void testOutOfOrderDocumentsAreSorted() {
+        PostingsList.Builder builder = new PostingsList.Builder();
+        builder.addOccurrence(10, 1);
+        builder.addOccurrence(2, 4);
+        builder.addOccurrence(2, 5);
+        builder.addOccurrence(7, 0);
+
+        PostingsList postings = builder.build();
+
+        assertEquals(2, postings.docId(0));
+        assertEquals(7, postings.docId(1));
+        assertEquals(10, postings.docId(2));
+        assertArrayEquals(new int[]{4, 5}, postings.positions(0));
+        assertArrayEquals(new int[]{1}, postings.positions(2));
+    }
+
+    @Test
+    void testIteratorNextDocAndPositions() {
+        PostingsList.Builder builder = new PostingsList.Builder();
+        builder.addOccurrence(4, 1);
+        builder.addOccurrence(4, 200);
+        builder.addOccurrence(8, 3);
+
+        PostingsIterator it = builder.build().iterator();
+
+        assertEquals(4, it.nextDoc());
+        assertEquals(2, it.freq());
+        assertEquals(1, it.nextPosition());
+        assertEquals(200, it.nextPosition());
+        assertEquals(8, it.nextDoc());
+        assertEquals(3, it.nextPosition());
+        assertEquals(PostingsIterator.NO_MORE_DOCS, it.nextDoc());
+    }
+
+    @Test
+    void testIteratorAdvance() {
+        PostingsList.Builder builder = new PostingsList.Builder();
+        for (int docId = 0; docId < 1000; docId += 3) {
+            builder.addOccurrence(docId, 0);
+        }
+        PostingsIterator it = builder.build().iterator();
+
+        assertEquals(0, it.advance(0));
+        assertEquals(3, it.advance(2));
+        assertEquals(3, it.advance(3), "Advancing to current target keeps position");
+        assertEquals(501, it.advance(500));
+        assertEquals(999, it.advance(998));
+        assertEquals(PostingsIterator.NO_MORE_DOCS, it.advance(1000));
+    }
+
+    @Test
+    void testBuildIsCachedUntilModified() {
+        PostingsList.Builder builder = new PostingsList.Builder();
+        builder.addOccurrence(1, 0);
+
+        PostingsList first = builder.build();
+        assertSame(first, builder.build());
+
+        builder.addOccurrence(2, 0);
+        assertNotSame(first, builder.build());
+        assertEquals(1, first.size(), "Previously built list is immutable");
+    }
+}
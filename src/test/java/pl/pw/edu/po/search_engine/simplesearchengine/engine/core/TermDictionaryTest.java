@@ -0,0 +1,65 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TermDictionary.
+ * Tests dense ID assignment, lookups and growth.
+ */
+class TermDictionaryTest {
+
+    private TermDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        dictionary = new TermDictionary();
+    }
+
+    @Test
+    void testIdsAreDenseAndStable() {
+        assertEquals(0, dictionary.getOrAdd("java"));
+        assertEquals(1, dictionary.getOrAdd("spring"));
+        assertEquals(0, dictionary.getOrAdd("java"), "Existing term keeps its ID");
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void testLookup() {
+        int id = dictionary.getOrAdd("search");
+
+        assertEquals(id, dictionary.lookup("search"));
+        assertEquals("search", dictionary.term(id));
+        assertEquals(TermDictionary.NOT_FOUND, dictionary.lookup("missing"));
+        assertEquals(TermDictionary.NOT_FOUND, dictionary.lookup(null));
+    }
+
+    @Test
+    void testGrowthKeepsAllTerms() {
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, dictionary.getOrAdd("term" + i));
+        }
+
+        assertEquals(10_000, dictionary.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, dictionary.lookup("term" + i));
+        }
+    }
+
+    @Test
+    void testClear() {
+        dictionary.getOrAdd("java");
+        dictionary.clear();
+
+        assertEquals(0, dictionary.size());
+        assertEquals(TermDictionary.NOT_FOUND, dictionary.lookup("java"));
+        assertEquals(0, dictionary.getOrAdd("spring"));
+    }
+
+    @Test
+    void testUnknownTermIdThrows() {
+        assertThrows(IndexOutOfBoundsException.class, () -> dictionary.term(0));
+    }
+}
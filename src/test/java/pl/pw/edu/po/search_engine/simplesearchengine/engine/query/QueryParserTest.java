@@ -0,0 +1,100 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.query;
+
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis.TextPreprocessor;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryParserTest {
+
+    private final QueryParser parser = new QueryParser(new TextPreprocessor());
+
+    @Test
+    void testAdjacentWordsUseDefaultOperator() {
+        assertEquals(and(term("java"), term("program")), parser.parse("Java programming", QueryParser.Operator.AND));
+        assertEquals(or(term("java"), term("program")), parser.parse("Java programming", QueryParser.Operator.OR));
+    }
+
+    @Test
+    void testPrecedenceNotOverAndOverOr() {
+        Query query = parser.parse("java AND spring OR python NOT snake", QueryParser.Operator.AND);
+
+        assertEquals(or(and(term("java"), term("spring")), and(term("python"), not(term("snake")))), query);
+    }
+
+    @Test
+    void testImplicitNotExcludesFromPrecedingClauseWithOrDefault() {
+        assertEquals(and(term("java"), not(term("legaci"))), parser.parse("java NOT legacy", QueryParser.Operator.OR));
+        assertEquals(or(and(term("java"), not(term("legaci"))), term("python")),
+                parser.parse("java NOT legacy python", QueryParser.Operator.OR));
+    }
+
+    @Test
+    void testParenthesesGroupClauses() {
+        Query query = parser.parse("java AND (spring OR jakarta) NOT legacy", QueryParser.Operator.AND);
+
+        assertEquals(and(term("java"), or(term("spring"), term("jakarta")), not(term("legaci"))), query);
+        assertEquals(List.of("java", "spring", "jakarta"), query.positiveTerms());
+    }
+
+    @Test
+    void testStopWordsAndLowerCaseOperatorsAreDropped() {
+        assertEquals(term("java"), parser.parse("the java and", QueryParser.Operator.AND));
+        assertNull(parser.parse("the OR a", QueryParser.Operator.AND));
+        assertNull(parser.parse("   ", QueryParser.Operator.AND));
+    }
+
+    @Test
+    void testPurelyNegativeQueryIsWrappedInConjunction() {
+        assertEquals(and(not(term("java"))), parser.parse("NOT java", QueryParser.Operator.AND));
+    }
+
+    @Test
+    void testQuotedTextAndSplitWordsArePhrases() {
+        assertEquals(or(phrase("spring", "boot"), term("java")),
+                parser.parse("\"Spring the Boot\" OR java", QueryParser.Operator.AND));
+        assertEquals(phrase("e", "mail"), parser.parse("e-mail", QueryParser.Operator.AND));
+        assertEquals(term("java"), parser.parse("\"the java\"", QueryParser.Operator.AND));
+    }
+
+    @Test
+    void testNearChainsBecomePairwiseConjunction() {
+        assertEquals(new Query.Near("jpa", "hibern", 3), parser.parse("jpa NEAR/3 hibernate", QueryParser.Operator.AND));
+        assertEquals(and(new Query.Near("a1", "b1", 2), new Query.Near("b1", "c1", 5), term("d1")),
+                parser.parse("a1 NEAR/2 b1 NEAR/5 c1 d1", QueryParser.Operator.AND));
+        assertEquals(term("java"), parser.parse("java NEAR/2 the", QueryParser.Operator.AND));
+        assertThrows(QueryParseException.class, () -> parser.parse("(a1 b1) NEAR/2 c1", QueryParser.Operator.AND));
+    }
+
+    @Test
+    void testMalformedQueriesAreRejected() {
+        assertThrows(QueryParseException.class, () -> parser.parse("\"java", QueryParser.Operator.AND));
+        assertThrows(QueryParseException.class, () -> parser.parse("(java", QueryParser.Operator.AND));
+        assertThrows(QueryParseException.class, () -> parser.parse("java)", QueryParser.Operator.AND));
+        assertThrows(QueryParseException.class, () -> parser.parse("java OR", QueryParser.Operator.AND));
+        assertThrows(QueryParseException.class, () -> parser.parse("AND java", QueryParser.Operator.AND));
+        assertThrows(QueryParseException.class, () -> parser.parse("()", QueryParser.Operator.AND));
+    }
+
+    private static Query term(String term) {
+        return new Query.Term(term);
+    }
+
+    private static Query phrase(String... terms) {
+        return new Query.Phrase(List.of(terms));
+    }
+
+    private static Query and(Query... clauses) {
+        return new Query.And(List.of(clauses));
+    }
+
+    private static Query or(Query... clauses) {
+        return new Query.Or(List.of(clauses));
+    }
+
+    private static Query not(Query clause) {
+        return new Query.Not(clause);
+    }
+}
@@ -0,0 +1,92 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.InvertedIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BM25SimilarityTest {
+
+    private IndexSnapshot snapshot;
+    private int javaId;
+    private int rareId;
+
+    @BeforeEach
+    void setUp() {
+        InvertedIndex index = new InvertedIndex();
+        index.addDocument(1, "java programming", List.of("java", "program"));
+        index.addDocument(2, "java rare", List.of("java", "rare"));
+        index.addDocument(3, "python programming", List.of("python", "program"));
+        index.addDocument(4, "kotlin programming", List.of("kotlin", "program", "languag", "jvm"));
+        snapshot = index.snapshot();
+        javaId = snapshot.termId("java");
+        rareId = snapshot.termId("rare");
+    }
+
+    @Test
+    void testMatchesBm25Formula() {
+        Similarity.TermScorer scorer = new BM25Similarity(1.2, 0.75).scorer(snapshot, javaId);
+
+        double idf = Math.log(1 + (4 - 2 + 0.5) / (2 + 0.5));
+        double avgDocLength = 10.0 / 4;
+        double expected = idf * 2 * 2.2 / (2 + 1.2 * (1 - 0.75 + 0.75 * 3 / avgDocLength));
+        assertEquals(expected, scorer.score(2, 3), 1e-9);
+    }
+
+    @Test
+    void testTermFrequencySaturates() {
+        Similarity.TermScorer scorer = new BM25Similarity().scorer(snapshot, javaId);
+
+        double gainFirst = scorer.score(2, 10) - scorer.score(1, 10);
+        double gainLater = scorer.score(20, 10) - scorer.score(19, 10);
+        assertTrue(gainLater < gainFirst);
+        assertTrue(scorer.score(1000, 10) < 2.2 * Math.log(1 + (4 - 2 + 0.5) / (2 + 0.5)));
+    }
+
+    @Test
+    void testShorterDocumentsAndRarerTermsScoreHigher() {
+        Similarity similarity = new BM25Similarity();
+
+        assertTrue(similarity.scorer(snapshot, javaId).score(1, 2) > similarity.scorer(snapshot, javaId).score(1, 8));
+        assertTrue(similarity.scorer(snapshot, rareId).score(1, 2) > similarity.scorer(snapshot, javaId).score(1, 2));
+    }
+
+    @Test
+    void testZeroBDisablesLengthNormalization() {
+        Similarity.TermScorer scorer = new BM25Similarity(1.2, 0).scorer(snapshot, javaId);
+
+        assertEquals(scorer.score(1, 2), scorer.score(1, 200), 1e-12);
+    }
+
+    @Test
+    void testUpdatedDocumentIsStillFound() {
+        InvertedIndex index = new InvertedIndex();
+        index.addDocument(1, "java programming", List.of("java", "program"));
+        index.addDocument(2, "python programming", List.of("python", "program"));
+        // Old versions stay in docFreq until merged away
+        index.addDocument(1, "java programming again", List.of("java", "program", "again"));
+        index.addDocument(1, "java programming", List.of("java", "program"));
+        IndexSnapshot updated = index.snapshot();
+        int termId = updated.termId("java");
+
+        assertEquals(2, updated.documentCount());
+        assertTrue(updated.docFreq(termId) <= updated.maxDoc());
+        assertTrue(new BM25Similarity().scorer(updated, termId).score(1, 2) > 0);
+
+        TopKCollector collector = new TopKCollector(10);
+        new DaatEvaluator(new BM25Similarity())
+                .conjunction(updated, new int[]{termId}, collector);
+        assertEquals(1, collector.totalHits());
+        assertEquals(1, collector.topDocs()[0].docId());
+    }
+
+    @Test
+    void testInvalidParametersRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BM25Similarity(-1, 0.75));
+        assertThrows(IllegalArgumentException.class, () -> new BM25Similarity(1.2, 1.5));
+    }
+}
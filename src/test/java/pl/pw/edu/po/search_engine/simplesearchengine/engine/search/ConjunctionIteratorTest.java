@@ -0,0 +1,64 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsIterator;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConjunctionIteratorTest {
+
+    @Test
+    void testVisitsDocumentsPresentInAllLists() {
+        PostingsIterator common = postings(0, 1000, 1).iterator();
+        PostingsIterator everyThird = postings(0, 1000, 3).iterator();
+        PostingsIterator rare = postings(5, 1000, 100).iterator();
+
+        ConjunctionIterator conjunction = new ConjunctionIterator(common, everyThird, rare);
+
+        assertEquals(10, conjunction.cost());
+        assertEquals(List.of(105, 405, 705), collect(conjunction));
+        // The common list was only visited at candidates of the rare one
+        assertEquals(705, common.docId());
+    }
+
+    @Test
+    void testSubIteratorsArePositionedOnMatch() {
+        PostingsIterator first = postings(0, 50, 2).iterator();
+        PostingsIterator second = postings(0, 50, 5).iterator();
+
+        ConjunctionIterator conjunction = new ConjunctionIterator(first, second);
+
+        assertEquals(0, conjunction.nextDoc());
+        assertEquals(20, conjunction.advance(11));
+        assertEquals(20, first.docId());
+        assertEquals(20, second.docId());
+        assertEquals(1, first.freq());
+    }
+
+    @Test
+    void testEmptyListEndsIntersectionImmediately() {
+        ConjunctionIterator conjunction = new ConjunctionIterator(postings(0, 100, 1).iterator(), PostingsList.EMPTY.iterator());
+
+        assertEquals(PostingsIterator.NO_MORE_DOCS, conjunction.nextDoc());
+    }
+
+    private static PostingsList postings(int from, int to, int step) {
+        PostingsList.Builder builder = new PostingsList.Builder();
+        for (int docId = from; docId < to; docId += step) {
+            builder.addOccurrence(docId, 0);
+        }
+        return builder.build();
+    }
+
+    private static List<Integer> collect(ConjunctionIterator conjunction) {
+        List<Integer> docIds = new ArrayList<>();
+        for (int doc = conjunction.nextDoc(); doc != PostingsIterator.NO_MORE_DOCS; doc = conjunction.nextDoc()) {
+            docIds.add(doc);
+        }
+        return docIds;
+    }
+}
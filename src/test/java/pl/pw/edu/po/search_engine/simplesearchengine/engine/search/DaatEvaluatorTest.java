@@ -0,0 +1,118 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.IndexSnapshot;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.InvertedIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DaatEvaluatorTest {
+
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex();
+        for (int id = 0; id < 30; id++) {
+            // "a" in every document, "b" in every 2nd, "c" in every 3rd
+            List<String> tokens = new ArrayList<>(List.of("a"));
+            if (id % 2 == 0) tokens.add("b");
+            if (id % 3 == 0) tokens.add("c");
+            index.addDocument(id, "Doc " + id, tokens);
+        }
+    }
+
+    @Test
+    void testConjunctionFindsDocumentsWithAllTerms() {
+        int[] docIds = search(new int[]{termId("a"), termId("b"), termId("c")}, 100);
+
+        assertArrayEquals(new int[]{0, 6, 12, 18, 24}, docIds);
+    }
+
+    @Test
+    void testConjunctionSkipsDeletedDocuments() {
+        index.removeDocument(12);
+
+        int[] docIds = search(new int[]{termId("b"), termId("c")}, 100);
+
+        assertArrayEquals(new int[]{0, 6, 18, 24}, docIds);
+    }
+
+    @Test
+    void testScoresMatchSimilarity() {
+        IndexSnapshot snapshot = index.snapshot();
+        TopKCollector collector = new TopKCollector(1);
+        new DaatEvaluator(new TfIdfSimilarity())
+                .conjunction(snapshot, new int[]{termId("c")}, collector);
+
+        double expected = new TfIdfSimilarity().scorer(snapshot, termId("c")).score(1, 2); // shortest match: "a c"
+        assertEquals(10, collector.totalHits());
+        assertEquals(expected, collector.topDocs()[0].score(), 1e-12);
+    }
+
+    @Test
+    void testDisjunctionFindsDocumentsWithAnyTerm() {
+        TopKCollector collector = new TopKCollector(100);
+        new DaatEvaluator(new BM25Similarity())
+                .disjunction(index.snapshot(), new int[]{termId("b"), termId("c")}, collector);
+
+        // 15 even + 5 odd multiples of 3
+        assertEquals(20, collector.totalHits());
+        assertTrue(collector.isTotalHitsExact());
+    }
+
+    @Test
+    void testBlockMaxWandReturnsSameTopDocsAsExhaustiveEvaluation() {
+        InvertedIndex large = new InvertedIndex();
+        Random random = new Random(42);
+        String[] vocabulary = {"common", "frequent", "rare", "other"};
+        double[] probability = {0.9, 0.5, 0.02, 0.3};
+        for (int id = 0; id < 3000; id++) {
+            List<String> tokens = new ArrayList<>();
+            int length = 1 + random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                int term = random.nextInt(vocabulary.length);
+                if (random.nextDouble() < probability[term]) {
+                    tokens.add(vocabulary[term]);
+                } else {
+                    tokens.add("filler" + random.nextInt(50));
+                }
+            }
+            large.addDocument(id, "Doc " + id, tokens);
+        }
+        for (int id = 0; id < 3000; id += 7) {
+            large.removeDocument(id);
+        }
+        IndexSnapshot snapshot = large.snapshot();
+        int[] termIds = {large.getTermId("common"), large.getTermId("frequent"), large.getTermId("rare")};
+        DaatEvaluator evaluator = new DaatEvaluator(new BM25Similarity());
+
+        // k = all documents: the heap never fills, nothing can be pruned
+        TopKCollector exhaustive = new TopKCollector(snapshot.documentCount());
+        evaluator.disjunction(snapshot, termIds, exhaustive);
+        TopKCollector pruned = new TopKCollector(10);
+        evaluator.disjunction(snapshot, termIds, pruned);
+
+        assertTrue(exhaustive.isTotalHitsExact());
+        assertFalse(pruned.isTotalHitsExact());
+        assertTrue(pruned.totalHits() < exhaustive.totalHits());
+        assertArrayEquals(Arrays.copyOf(exhaustive.topDocs(), 10), pruned.topDocs());
+    }
+
+    private int[] search(int[] termIds, int k) {
+        TopKCollector collector = new TopKCollector(k);
+        new DaatEvaluator(new BM25Similarity())
+                .conjunction(index.snapshot(), termIds, collector);
+        return Arrays.stream(collector.topDocs()).mapToInt(TopKCollector.ScoredDoc::docId).sorted().toArray();
+    }
+
+    private int termId(String term) {
+        return index.getTermId(term);
+    }
+}
@@ -0,0 +1,43 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HighlighterTest {
+
+    @Test
+    void testMatchesAreWrappedAndContentEscaped() {
+        String content = "Use <Java> & Spring";
+        List<Highlighter.Match> matches = List.of(new Highlighter.Match(5, 9, 0), new Highlighter.Match(13, 19, 1));
+
+        assertEquals("Use &lt;<em>Java</em>&gt; &amp; <em>Spring</em>", Highlighter.snippet(content, matches, 200));
+    }
+
+    @Test
+    void testPassageWithMostDistinctTermsWins() {
+        String filler = "lorem ipsum dolor sit amet ".repeat(10);
+        String content = "java " + filler + "java spring " + filler;
+        int second = content.indexOf("java spring");
+        List<Highlighter.Match> matches = List.of(
+                new Highlighter.Match(0, 4, 0),
+                new Highlighter.Match(second, second + 4, 0),
+                new Highlighter.Match(second + 5, second + 11, 1));
+
+        String snippet = Highlighter.snippet(content, matches, 80);
+
+        assertTrue(snippet.startsWith("..."), snippet);
+        assertTrue(snippet.contains("<em>java</em> <em>spring</em>"), snippet);
+        assertTrue(snippet.endsWith("..."), snippet);
+        // Borders are moved to word boundaries
+        assertFalse(snippet.startsWith("...orem"), snippet);
+    }
+
+    @Test
+    void testWithoutMatchesReturnsBeginning() {
+        assertEquals("abc...", Highlighter.snippet("abcdef", List.of(), 3));
+        assertEquals("", Highlighter.snippet("", List.of(), 3));
+    }
+}
@@ -0,0 +1,191 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis.TextPreprocessor;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.Field;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.InvertedIndex;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.query.Query;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.query.QueryParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryEvaluatorTest {
+
+    private final QueryParser parser = new QueryParser(new TextPreprocessor());
+    private InvertedIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new InvertedIndex();
+        for (int id = 0; id < 30; id++) {
+            // "all" in every document, "b" in every 2nd, "c" in every 3rd, "d" in every 5th
+            List<String> tokens = new ArrayList<>(List.of("all"));
+            if (id % 2 == 0) tokens.add("b");
+            if (id % 3 == 0) tokens.add("c");
+            if (id % 5 == 0) tokens.add("d");
+            index.addDocument(id, "Doc " + id, tokens);
+        }
+    }
+
+    @Test
+    void testNestedBooleanQuery() {
+        // (b AND c) OR d, excluding multiples of 10
+        int[] docIds = search("((b c) OR d) NOT (b AND d)");
+
+        assertArrayEquals(new int[]{5, 6, 12, 15, 18, 24, 25}, docIds);
+    }
+
+    @Test
+    void testExclusionOnlyRemovesDocuments() {
+        assertArrayEquals(new int[]{3, 9, 15, 21, 27}, search("c NOT b"));
+    }
+
+    @Test
+    void testExclusionWithOrDefaultOperator() {
+        // Multiples of 3 that are odd, plus every multiple of 5
+        assertArrayEquals(new int[]{0, 3, 5, 9, 10, 15, 20, 21, 25, 27}, search("c NOT b d", QueryParser.Operator.OR));
+        assertArrayEquals(new int[]{3, 9, 15, 21, 27}, search("c NOT b", QueryParser.Operator.OR));
+    }
+
+    @Test
+    void testUnknownTermsShortCircuit() {
+        assertArrayEquals(new int[0], search("b AND unknown"));
+        assertArrayEquals(new int[]{0, 5, 10, 15, 20, 25}, search("d OR unknown"));
+        assertArrayEquals(new int[]{0, 5, 10, 15, 20, 25}, search("d NOT unknown"));
+        assertArrayEquals(new int[0], search("NOT d"));
+    }
+
+    @Test
+    void testSimplifyDropsEmptyClauses() {
+        Query query = parser.parse("(b OR unknown) NOT unknown", QueryParser.Operator.AND);
+
+        assertEquals(new Query.Term("b"), QueryEvaluator.simplify(index.snapshot(), query));
+    }
+
+    @Test
+    void testDeletedDocumentsAreSkipped() {
+        index.removeDocument(6);
+
+        assertArrayEquals(new int[]{5, 12, 15, 18, 24, 25}, search("((b c) OR d) NOT (b AND d)"));
+    }
+
+    @Test
+    void testMatchingMoreClausesScoresHigher() {
+        TopKCollector collector = new TopKCollector(1);
+        Query query = parser.parse("(b OR c OR d) NOT all", QueryParser.Operator.AND);
+        new QueryEvaluator(new BM25Similarity()).evaluate(index.snapshot(), query, collector);
+        assertEquals(0, collector.totalHits());
+
+        query = parser.parse("(b OR c OR d) all", QueryParser.Operator.AND);
+        new QueryEvaluator(new BM25Similarity()).evaluate(index.snapshot(), query, collector);
+        // only document 0 contains b, c and d
+        assertEquals(0, collector.topDocs()[0].docId());
+    }
+
+    @Test
+    void testPhraseRequiresConsecutivePositions() {
+        index = new InvertedIndex();
+        index.addDocument(1, "spring boot java", List.of("spring", "boot", "java"));
+        index.addDocument(2, "boot spring java", List.of("boot", "spring", "java"));
+        index.addDocument(3, "spring java boot", List.of("spring", "java", "boot"));
+        index.addDocument(4, "java spring boot spring boot", List.of("java", "spring", "boot", "spring", "boot"));
+
+        assertArrayEquals(new int[]{1, 4}, search("\"spring boot\""));
+        assertArrayEquals(new int[]{1}, search("\"spring boot java\""));
+        assertArrayEquals(new int[]{2, 3}, search("spring boot NOT \"spring boot\""));
+
+        // Two phrase occurrences score higher
+        TopKCollector collector = new TopKCollector(1);
+        new QueryEvaluator(new BM25Similarity()).evaluate(index.snapshot(),
+                parser.parse("\"spring boot\"", QueryParser.Operator.AND), collector);
+        assertEquals(4, collector.topDocs()[0].docId());
+    }
+
+    @Test
+    void testNearMatchesTermsWithinDistanceInAnyOrder() {
+        index = new InvertedIndex();
+        index.addDocument(1, "", List.of("jpa", "x", "x", "hibern"));
+        index.addDocument(2, "", List.of("hibern", "x", "jpa"));
+        index.addDocument(3, "", List.of("jpa", "x", "x", "x", "x", "hibern"));
+        index.addDocument(4, "", List.of("jpa", "x", "jpa"));
+
+        assertArrayEquals(new int[]{1, 2}, search("jpa NEAR/3 hibernate"));
+        assertArrayEquals(new int[]{2}, search("jpa NEAR/2 hibernate"));
+        assertArrayEquals(new int[]{4}, search("jpa NEAR/2 jpa"));
+        assertArrayEquals(new int[]{2, 4}, search("x AND (jpa NEAR/2 hibernate OR jpa NEAR/2 jpa)"));
+    }
+
+    @Test
+    void testFieldsAreSearchedWithTheirBoosts() {
+        InvertedIndex fields = new InvertedIndex();
+        fields.addDocument(1, "Java", "about python", Map.of(
+                Field.TITLE, List.of("java"), Field.CONTENT, List.of("python")), null);
+        fields.addDocument(2, "Other", "java python", Map.of(
+                Field.TITLE, List.of("other"), Field.CONTENT, List.of("java", "python")), null);
+        fields.addDocument(3, "Misc", "python", Map.of(
+                Field.TITLE, List.of("misc"), Field.CONTENT, List.of("python"), Field.URL, List.of("java")), null);
+        FieldBoosts boosts = new FieldBoosts(2.0, 1.0, 0.0);
+
+        // Term found in any searched field; a short title outweighs the body
+        assertArrayEquals(new int[]{1, 2}, ranked(fields, "java", boosts));
+        assertArrayEquals(new int[]{1, 2}, ranked(fields, "java python", boosts));
+        assertArrayEquals(new int[]{1, 2, 3}, ranked(fields, "java OR python", boosts));
+        assertArrayEquals(new int[]{1, 2, 3}, ranked(fields, "java", new FieldBoosts(2.0, 1.0, 0.5)));
+        // Content only: the title is not searched
+        assertArrayEquals(new int[]{2}, ranked(fields, "java", FieldBoosts.CONTENT_ONLY));
+        assertArrayEquals(new int[]{2}, ranked(fields, "java NOT misc", FieldBoosts.CONTENT_ONLY));
+    }
+
+    @Test
+    void testHitsReportMatchedQueryTerms() {
+        // bits follow Query.positiveTerms(): b = 1, c = 2, d = 4
+        assertEquals(Map.of(0, 0b111L, 2, 0b001L, 3, 0b010L, 4, 0b001L, 5, 0b100L),
+                matchedTerms("b OR c OR d", 6));
+        assertEquals(Map.of(6, 0b11L, 12, 0b11L, 18, 0b11L, 24, 0b11L),
+                matchedTerms("b c NOT d", 30));
+        // b = 1, d = 2; the excluded term gets no bit
+        assertEquals(Map.of(2, 0b01L, 4, 0b01L, 5, 0b10L, 8, 0b01L, 10, 0b11L),
+                matchedTerms("(b OR d) NOT c", 11));
+        // a phrase match contains all of its terms
+        assertEquals(Map.of(0, 0b1111L, 2, 0b0011L, 4, 0b0011L, 6, 0b0011L),
+                matchedTerms("all (b OR \"c d\")", 7));
+    }
+
+    private Map<Integer, Long> matchedTerms(String queryString, int maxDocId) {
+        Query query = parser.parse(queryString, QueryParser.Operator.AND);
+        TopKCollector collector = new TopKCollector(30);
+        new QueryEvaluator(new BM25Similarity())
+                .evaluate(index.snapshot(), query, collector);
+        Map<Integer, Long> matched = new HashMap<>();
+        for (TopKCollector.ScoredDoc hit : collector.topDocs()) {
+            if (hit.docId() < maxDocId) matched.put(hit.docId(), hit.matchedTerms());
+        }
+        return matched;
+    }
+
+    private int[] ranked(InvertedIndex target, String queryString, FieldBoosts boosts) {
+        Query query = parser.parse(queryString, QueryParser.Operator.AND);
+        TopKCollector collector = new TopKCollector(10);
+        new QueryEvaluator(new BM25Similarity(), boosts)
+                .evaluate(target.snapshot(), query, collector);
+        return Arrays.stream(collector.topDocs()).mapToInt(TopKCollector.ScoredDoc::docId).toArray();
+    }
+
+    private int[] search(String queryString) {
+        return search(queryString, QueryParser.Operator.AND);
+    }
+
+    private int[] search(String queryString, QueryParser.Operator defaultOperator) {
+        Query query = parser.parse(queryString, defaultOperator);
+        TopKCollector collector = new TopKCollector(100);
+        new QueryEvaluator(new BM25Similarity()).evaluate(index.snapshot(), query, collector);
+        return Arrays.stream(collector.topDocs()).mapToInt(TopKCollector.ScoredDoc::docId).sorted().toArray();
+    }
+}
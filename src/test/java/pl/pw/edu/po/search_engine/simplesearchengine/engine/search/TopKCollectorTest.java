@@ -0,0 +1,60 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.engine.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKCollectorTest {
+
+    @Test
+    void testKeepsBestHitsSortedByScore() {
+        TopKCollector collector = new TopKCollector(3);
+        double[] scores = {0.5, 2.0, 0.1, 3.0, 1.0, 2.5};
+        for (int docId = 0; docId < scores.length; docId++) {
+            collector.collect(docId, scores[docId]);
+        }
+
+        int[] docIds = Arrays.stream(collector.topDocs()).mapToInt(TopKCollector.ScoredDoc::docId).toArray();
+        assertArrayEquals(new int[]{3, 5, 1}, docIds);
+        assertEquals(6, collector.totalHits());
+        assertEquals(2.0, collector.minCompetitiveScore());
+    }
+
+    @Test
+    void testTiesAreBrokenByLowerDocId() {
+        TopKCollector collector = new TopKCollector(2);
+        collector.collect(7, 1.0);
+        collector.collect(3, 1.0);
+        collector.collect(5, 1.0);
+
+        int[] docIds = Arrays.stream(collector.topDocs()).mapToInt(TopKCollector.ScoredDoc::docId).toArray();
+        assertArrayEquals(new int[]{3, 5}, docIds);
+    }
+
+    @Test
+    void testZeroSizeOnlyCounts() {
+        TopKCollector collector = new TopKCollector(0);
+        collector.collect(1, 1.0);
+        collector.collect(2, 2.0);
+
+        assertEquals(0, collector.topDocs().length);
+        assertEquals(2, collector.totalHits());
+        assertEquals(Double.NEGATIVE_INFINITY, collector.minCompetitiveScore());
+    }
+
+    @Test
+    void testMatchedTermsStayWithTheirHit() {
+        TopKCollector collector = new TopKCollector(2);
+        collector.collect(1, 1.0, 0b001);
+        collector.collect(2, 3.0, 0b011);
+        collector.collect(3, 2.0, 0b100);
+
+        assertArrayEquals(new TopKCollector.ScoredDoc[]{
+                new TopKCollector.ScoredDoc(2, 3.0, 0b011),
+                new TopKCollector.ScoredDoc(3, 2.0, 0b100)}, collector.topDocs());
+        assertEquals(1L << 63, TopKCollector.termMask(63));
+        assertEquals(0L, TopKCollector.termMask(64));
+    }
+}
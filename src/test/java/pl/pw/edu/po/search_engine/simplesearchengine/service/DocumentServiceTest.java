@@ -0,0 +1,136 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.pw.edu.po.search_engine.simplesearchengine.dto.BulkImportResult;
+import pl.pw.edu.po.search_engine.simplesearchengine.dto.DocumentRequest;
+import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
+import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentBulkRepository;
+import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests of the bulk import in DocumentService (batching, duplicate and invalid documents).
+ */
+class DocumentServiceTest {
+
+    @Mock
+    private DocumentRepository documentRepository;
+
+    @Mock
+    private DocumentBulkRepository documentBulkRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private IndexingQueue indexingQueue;
+
+    private DocumentService documentService;
+
+    // URLs in the documents table; the fake repository reads and inserts through it
+    private final Set<String> table = new HashSet<>();
+    private final List<List<String>> insertedBatches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        documentService = new DocumentService(documentRepository, documentBulkRepository, transactionTemplate, indexingQueue);
+        ReflectionTestUtils.setField(documentService, "bulkBatchSize", 2);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(documentBulkRepository.findExistingUrls(any())).thenAnswer(invocation -> {
+            Collection<String> urls = invocation.getArgument(0);
+            return urls.stream().filter(table::contains).collect(Collectors.toSet());
+        });
+        when(documentBulkRepository.insertAll(any())).thenAnswer(invocation -> {
+            List<Document> documents = invocation.getArgument(0);
+            long id = 100 + insertedBatches.size() * 10L;
+            List<Document> inserted = new ArrayList<>();
+            for (Document document : documents) {
+                document.setId(id++);
+                // ON CONFLICT DO NOTHING
+                if (table.add(document.getUrl())) {
+                    inserted.add(document);
+                }
+            }
+            insertedBatches.add(inserted.stream().map(Document::getUrl).toList());
+            return inserted;
+        });
+    }
+
+    @Test
+    void testImportInsertsAndIndexesInBatches() {
+        BulkImportResult result = documentService.importDocuments(List.of(
+                request("https://example.com/1"),
+                request("https://example.com/2"),
+                request("https://example.com/3")).iterator());
+
+        assertEquals(3, result.getDocumentsReceived());
+        assertEquals(3, result.getDocumentsCreated());
+        assertEquals(0, result.getDuplicatesSkipped());
+        assertEquals(List.of(List.of("https://example.com/1", "https://example.com/2"), List.of("https://example.com/3")),
+                insertedBatches);
+        // One duplicate check, one insert and one queue submission per batch
+        verify(documentBulkRepository, times(2)).findExistingUrls(any());
+        verify(indexingQueue, times(2)).addAll(any());
+        verify(documentRepository, never()).save(any());
+    }
+
+    @Test
+    void testImportSkipsDuplicateAndInvalidDocuments() {
+        table.add("https://example.com/stored");
+
+        BulkImportResult result = documentService.importDocuments(List.of(
+                request("https://example.com/stored"),
+                request("https://example.com/new"),
+                request("https://example.com/new"),
+                request(null),
+                new DocumentRequest(null, null, "No content", "https://example.com/empty"),
+                request("https://example.com/new")).iterator());
+
+        assertEquals(6, result.getDocumentsReceived());
+        assertEquals(1, result.getDocumentsCreated());
+        // stored before, repeated in the same batch, repeated in a later batch
+        assertEquals(3, result.getDuplicatesSkipped());
+        assertEquals(2, result.getInvalidSkipped());
+        assertEquals(List.of(List.of("https://example.com/new")), insertedBatches);
+    }
+
+    @Test
+    void testConcurrentlyStoredUrlsAreNotIndexed() {
+        // Inserted by someone else between the duplicate check and the insert
+        doReturn(Set.of()).when(documentBulkRepository).findExistingUrls(any());
+        table.add("https://example.com/2");
+
+        BulkImportResult result = documentService.importDocuments(List.of(
+                request("https://example.com/1"),
+                request("https://example.com/2")).iterator());
+
+        assertEquals(1, result.getDocumentsCreated());
+        assertEquals(1, result.getDuplicatesSkipped());
+        ArgumentCaptor<List<Document>> indexed = ArgumentCaptor.captor();
+        verify(indexingQueue).addAll(indexed.capture());
+        assertEquals(List.of("https://example.com/1"), indexed.getValue().stream().map(Document::getUrl).toList());
+    }
+
+    private static DocumentRequest request(String url) {
+        return new DocumentRequest(null, "Content of " + url, "Title", url);
+    }
+}
@@ -0,0 +1,148 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentRepository;
+import pl.pw.edu.po.search_engine.simplesearchengine.repository.IndexedDocument;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class IndexInitializationServiceTest {
+
+    @TempDir
+    Path indexDirectory;
+
+    private DocumentRepository documentRepository;
+    private IndexingService indexingService;
+    private IndexingQueue indexingQueue;
+    private IndexInitializationService service;
+    private final List<IndexedDocument> table = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        documentRepository = mock(DocumentRepository.class);
+        indexingService = new IndexingService();
+        // Refresh interval far away: queued documents become searchable only when the queue is drained
+        indexingQueue = new IndexingQueue(indexingService, 100, 10, 1, 3_600_000, 1000);
+        service = newService(indexingService, indexingQueue);
+
+        when(documentRepository.count()).thenAnswer(invocation -> (long) table.size());
+        when(documentRepository.findLastUpdatedAt()).thenReturn(Optional.empty());
+        // Keyset page: IDs after the given one, in ID order
+        when(documentRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            Limit limit = invocation.getArgument(1);
+            return table.stream().filter(doc -> doc.getId() > after).limit(limit.max()).toList();
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        indexingQueue.shutdown();
+    }
+
+    @Test
+    void testRebuildStreamsPagesToWorkers() {
+        for (long id = 1; id <= 100; id++) {
+            // Gaps in the IDs, as left behind by deleted rows
+            long docId = 3 * id;
+            table.add(document(docId, "Title " + docId, (docId % 2 == 0 ? "even " : "odd ") + "document"));
+        }
+
+        service.initializeIndex();
+
+        assertEquals(100, indexingService.getDocumentCount());
+        assertEquals("odd document", indexingService.getInvertedIndex().getDocumentById(3));
+        assertEquals(50, indexingService.getInvertedIndex().getDocumentsForTerm("even").size());
+        assertTrue(indexingService.getInvertedIndex().getDocumentsForTerm("even").containsKey(300));
+        // 100 documents in pages of 7: 15 pages, the last one short
+        verify(documentRepository, times(15)).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+        verify(documentRepository, never()).findAll();
+
+        IndexRebuildProgress.Status status = service.getRebuildProgress().status();
+        assertEquals(IndexRebuildProgress.State.COMPLETED, status.state());
+        assertEquals(100, status.indexedDocuments());
+        assertEquals(100.0, status.percent());
+    }
+
+    @Test
+    void testEmptyDatabaseSkipsRebuild() {
+        service.initializeIndex();
+
+        assertEquals(0, indexingService.getDocumentCount());
+        assertEquals(IndexRebuildProgress.State.IDLE, service.getRebuildProgress().status().state());
+        verify(documentRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+    }
+
+    @Test
+    void testFailingWorkerFailsTheRebuild() {
+        for (long id = 1; id <= 20; id++) {
+            table.add(document(id, "Title", "content"));
+        }
+        // Column that cannot be read, e.g. a broken row
+        table.set(12, new IndexedDocument() {
+            public Long getId() { return 13L; }
+            public String getTitle() { throw new IllegalArgumentException("broken row"); }
+            public String getContent() { return "content"; }
+            public String getUrl() { return null; }
+        });
+
+        assertThrows(IllegalStateException.class, service::initializeIndex);
+        assertEquals(IndexRebuildProgress.State.FAILED, service.getRebuildProgress().status().state());
+        assertEquals(0, indexingService.getDocumentCount(), "Nothing should be published");
+    }
+
+    @Test
+    void testShutdownPersistsQueuedChanges() throws InterruptedException {
+        for (long id = 1; id <= 10; id++) {
+            table.add(document(id, "Title " + id, "stored document"));
+        }
+        service.initializeIndex();
+
+        // Committed row whose index update is still queued at shutdown
+        table.add(document(11, "Title 11", "late document"));
+        indexingQueue.add("11", "Title 11", "late document", "https://example.com/11");
+        service.persistIndex();
+
+        // The next start opens the stored index (fingerprint matches) and must find the late document
+        IndexingService restarted = new IndexingService();
+        IndexingQueue restartedQueue = new IndexingQueue(restarted, 100, 10, 1, 3_600_000, 1000);
+        clearInvocations(documentRepository);
+        newService(restarted, restartedQueue).initializeIndex();
+        restartedQueue.shutdown();
+
+        verify(documentRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+        assertEquals(11, restarted.getDocumentCount());
+        assertEquals("late document", restarted.getInvertedIndex().getDocumentById(11));
+    }
+
+    private IndexInitializationService newService(IndexingService indexingService, IndexingQueue indexingQueue) {
+        IndexInitializationService service = new IndexInitializationService(documentRepository, indexingService,
+                indexingQueue);
+        ReflectionTestUtils.setField(service, "indexDirectory", indexDirectory.toString());
+        ReflectionTestUtils.setField(service, "rebuildBatchSize", 7);
+        ReflectionTestUtils.setField(service, "rebuildThreads", 3);
+        return service;
+    }
+
+    private static IndexedDocument document(long id, String title, String content) {
+        return new IndexedDocument() {
+            public Long getId() { return id; }
+            public String getTitle() { return title; }
+            public String getContent() { return content; }
+            public String getUrl() { return "https://example.com/" + id; }
+        };
+    }
+}
@@ -0,0 +1,218 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pl.pw.edu.po.search_engine.simplesearchengine.exception.IndexingQueueFullException;
+import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class IndexingQueueTest {
+
+    private IndexingService indexingService = new IndexingService();
+    private IndexingQueue queue;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void testDocumentsBecomeSearchableAfterRefresh() throws Exception {
+        queue = new IndexingQueue(indexingService, 100, 10, 2, 20, 1000);
+
+        for (int id = 1; id <= 25; id++) {
+            queue.add(String.valueOf(id), "Title " + id, "content number " + id, null);
+        }
+        queue.whenSearchable().get(5, TimeUnit.SECONDS);
+
+        assertEquals(25, indexingService.getDocumentCount());
+        assertEquals("content number 7", indexingService.getInvertedIndex().getDocumentById(7));
+        assertEquals(0, queue.pending());
+    }
+
+    @Test
+    void testOperationsAreAppliedInSubmissionOrder() throws Exception {
+        queue = new IndexingQueue(indexingService, 100, 3, 4, 20, 1000);
+
+        queue.add("1", "First", "first version", null);
+        queue.add("2", "Second", "second document", null);
+        queue.add("1", "First", "updated version", null);
+        queue.delete("2");
+        queue.clear();
+        queue.add("3", "Third", "third document", null);
+        queue.whenSearchable().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, indexingService.getDocumentCount());
+        assertEquals("third document", indexingService.getInvertedIndex().getDocumentById(3));
+
+        queue.add("1", "First", "first version", null);
+        queue.add("1", "First", "updated version", null);
+        queue.whenSearchable().get(5, TimeUnit.SECONDS);
+        assertEquals("updated version", indexingService.getInvertedIndex().getDocumentById(1));
+    }
+
+    @Test
+    void testAddAllReservesRoomForTheWholeBatch() throws Exception {
+        queue = new IndexingQueue(indexingService, 3, 10, 2, 20, 50);
+        List<Document> documents = new ArrayList<>();
+        for (long id = 1; id <= 3; id++) {
+            Document document = new Document("Title " + id, "bulk content " + id, "https://example.com/" + id);
+            document.setId(id);
+            documents.add(document);
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+        queue.addAll(documents);
+        assertEquals(3, queue.pending());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        queue.whenSearchable().get(5, TimeUnit.SECONDS);
+
+        assertEquals(3, indexingService.getDocumentCount());
+        assertEquals("bulk content 2", indexingService.getInvertedIndex().getDocumentById(2));
+        assertThrows(IllegalArgumentException.class, () -> queue.addAll(List.of(documents.get(0), documents.get(1),
+                documents.get(2), documents.get(0))));
+    }
+
+    @Test
+    void testUpdatedDocumentStaysSearchableUntilRefresh() throws Exception {
+        indexingService.addDocument("1", "First", "first version");
+        queue = new IndexingQueue(indexingService, 100, 10, 1, 3_600_000, 1000);
+
+        queue.add("1", "First", "second version", null);
+        // Wait until the writer has applied (buffered) the update, the refresh is far away
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.pending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(0, queue.pending());
+        assertEquals("first version", indexingService.getInvertedIndex().getDocumentById(1));
+        queue.shutdown();
+        assertEquals("second version", indexingService.getInvertedIndex().getDocumentById(1));
+    }
+
+    @Test
+    void testDeletesArePublishedWithTheRefresh() throws Exception {
+        indexingService.addDocument("1", "First", "first document");
+        indexingService.addDocument("2", "Second", "second document");
+        long generation = indexingService.getGeneration();
+        queue = new IndexingQueue(indexingService, 100, 10, 1, 3_600_000, 1000);
+
+        queue.delete("1");
+        queue.add("3", "Third", "third document", null);
+        queue.delete("2");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.pending() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        // Applied to the index buffer, but nothing is visible before the refresh
+        assertEquals(0, queue.pending());
+        assertEquals(generation, indexingService.getGeneration());
+        assertEquals("first document", indexingService.getInvertedIndex().getDocumentById(1));
+
+        queue.shutdown();
+        assertEquals(generation + 1, indexingService.getGeneration());
+        assertEquals(1, indexingService.getDocumentCount());
+        assertEquals("third document", indexingService.getInvertedIndex().getDocumentById(3));
+    }
+
+    @Test
+    void testFullBufferIsPublishedBeforeTheRefreshInterval() throws Exception {
+        queue = new IndexingQueue(indexingService, 2000, 500, 2, 3_600_000, 1000);
+        long generation = indexingService.getGeneration();
+
+        for (int id = 1; id <= 1200; id++) {
+            queue.add(String.valueOf(id), "Title " + id, "bulk document " + id, null);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (indexingService.getGeneration() == generation && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+
+        // Published by the writer through IndexingService.refresh(), so cached result pages are invalidated
+        assertTrue(indexingService.getGeneration() > generation);
+        assertTrue(indexingService.getDocumentCount() >= 1000);
+    }
+
+    @Test
+    void testOnlyCommittedChangesAreIndexed() throws Exception {
+        queue = new IndexingQueue(indexingService, 100, 10, 1, 20, 1000);
+
+        TransactionSynchronizationManager.initSynchronization();
+        queue.add("1", "Rolled back", "rolled back", null);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        TransactionSynchronizationManager.initSynchronization();
+        queue.add("2", "Committed", "committed", null);
+        assertEquals(1, queue.pending(), "Room is reserved inside the transaction");
+        assertEquals(0, indexingService.getDocumentCount(), "Nothing is indexed before commit");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        queue.whenSearchable().get(5, TimeUnit.SECONDS);
+        assertEquals(1, indexingService.getDocumentCount());
+        assertNull(indexingService.getInvertedIndex().getDocumentById(1));
+        assertEquals(0, queue.pending());
+    }
+
+    @Test
+    void testFullQueueRejectsAfterTimeout() throws Exception {
+        CountDownLatch analyzing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IndexingService blocked = spy(new IndexingService());
+        doAnswer(invocation -> {
+            analyzing.countDown();
+            release.await();
+            return invocation.callRealMethod();
+        }).when(blocked).analyze(anyString(), anyString(), anyString(), any());
+        indexingService = blocked;
+        queue = new IndexingQueue(blocked, 2, 10, 1, 20, 50);
+
+        queue.add("1", "One", "one", null);
+        assertTrue(analyzing.await(5, TimeUnit.SECONDS));
+        queue.add("2", "Two", "two", null);
+
+        assertThrows(IndexingQueueFullException.class, () -> queue.add("3", "Three", "three", null));
+
+        release.countDown();
+        queue.whenSearchable().get(5, TimeUnit.SECONDS);
+        assertEquals(2, blocked.getDocumentCount());
+        queue.add("3", "Three", "three", null);
+    }
+
+    @Test
+    void testShutdownPublishesPendingDocuments() throws Exception {
+        // Refresh interval far away: only shutdown makes the documents searchable
+        queue = new IndexingQueue(indexingService, 100, 10, 1, 3_600_000, 1000);
+        queue.add("1", "One", "one", null);
+        queue.add("2", "Two", "two", null);
+        assertFalse(queue.whenSearchable().isDone());
+
+        queue.shutdown();
+
+        assertEquals(2, indexingService.getDocumentCount());
+        assertThrows(IllegalStateException.class, () -> queue.add("3", "Three", "three", null));
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
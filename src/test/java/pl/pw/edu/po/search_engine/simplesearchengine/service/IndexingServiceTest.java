@@ -3,6 +3,7 @@ package pl.pw.edu.po.search_engine.simplesearchengine.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import pl.pw.edu.po.search_engine.simplesearchengine.dto.DocumentRequest;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.ActiveIndex;
 import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.InvertedIndex;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -118,6 +119,26 @@ class IndexingServiceTest {
         assertEquals(0, indexingService.getDocumentCount());
     }
 
+    @Test
+    void testReplaceIndexSwapsWithoutTouchingRunningSearch() {
+        indexingService.addDocument("1", "Original document");
+        long generation = indexingService.getGeneration();
+
+        InvertedIndex newIndex = new InvertedIndex();
+        newIndex.bufferDocument(7, "Rebuilt document", java.util.List.of("rebuilt", "document"));
+
+        try (ActiveIndex.Searcher running = indexingService.acquireSearcher()) {
+            indexingService.replaceIndex(newIndex);
+
+            assertNotNull(running.snapshot().segmentOf(1), "Running search should keep the old index");
+            assertSame(newIndex, indexingService.getInvertedIndex());
+            // Buffered documents of the new index are published by the swap, IDs are kept
+            assertEquals(1, indexingService.getDocumentCount());
+            assertEquals("Rebuilt document", indexingService.getInvertedIndex().getDocumentById(7));
+            assertTrue(indexingService.getGeneration() > generation);
+        }
+    }
+
     @Test
     void testIndexComplexDocument() {
         String complexContent = "Machine learning is a subset of artificial intelligence. " +
@@ -0,0 +1,85 @@
+package pl.pw.edu.po.search_engine.simplesearchengine.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.query.Query;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.TopKCollector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultCacheTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testHitsAndMissesAreCounted() {
+        QueryResultCache cache = newCache(1 << 20);
+        QueryResultCache.Key key = key("java", 0);
+
+        assertNull(cache.get(key, 0));
+        cache.put(key, 0, entry(3));
+
+        assertEquals(3, cache.get(key, 0).hits().size());
+        assertEquals(1.0, counter("hit"));
+        assertEquals(1.0, counter("miss"));
+        assertEquals(1.0, registry.get("cache.size").gauge().value());
+    }
+
+    @Test
+    void testNewGenerationInvalidatesEverything() {
+        QueryResultCache cache = newCache(1 << 20);
+        cache.put(key("java", 0), 0, entry(1));
+
+        assertNull(cache.get(key("java", 0), 1));
+        assertEquals(0, cache.weight());
+
+        // Pages computed on an older generation are not cached any more
+        cache.put(key("java", 0), 0, entry(1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntriesAreEvictedBySize() {
+        QueryResultCache cache = newCache(1200);
+        cache.put(key("first", 0), 0, entry(10));
+        cache.put(key("second", 0), 0, entry(10));
+        cache.get(key("first", 0), 0);
+        cache.put(key("third", 0), 0, entry(10));
+
+        assertNotNull(cache.get(key("first", 0), 0));
+        assertNull(cache.get(key("second", 0), 0));
+        assertNotNull(cache.get(key("third", 0), 0));
+        assertTrue(cache.weight() <= 1200);
+        assertEquals(1.0, registry.get("cache.evictions").functionCounter().count());
+
+        // Entries larger than the whole cache are not stored
+        cache.put(key("huge", 0), 0, entry(100));
+        assertNull(cache.get(key("huge", 0), 0));
+    }
+
+    private double counter(String result) {
+        return registry.get("cache.gets").tag("result", result).functionCounter().count();
+    }
+
+    private QueryResultCache newCache(long maxWeight) {
+        QueryResultCache cache = new QueryResultCache(maxWeight);
+        cache.bindTo(registry);
+        return cache;
+    }
+
+    private static QueryResultCache.Key key(String term, int offset) {
+        return new QueryResultCache.Key(new Query.Term(term), offset, 10);
+    }
+
+    private static QueryResultCache.Entry entry(int hits) {
+        List<TopKCollector.ScoredDoc> docs = new ArrayList<>();
+        for (int i = 0; i < hits; i++) {
+            docs.add(new TopKCollector.ScoredDoc(i, 1.0));
+        }
+        return new QueryResultCache.Entry(docs, hits, true);
+    }
+}
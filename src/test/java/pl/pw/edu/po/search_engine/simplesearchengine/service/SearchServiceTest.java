@@ -7,10 +7,19 @@ import org.mockito.MockitoAnnotations;
 import pl.pw.edu.po.search_engine.simplesearchengine.dto.SearchRequest;
 import pl.pw.edu.po.search_engine.simplesearchengine.dto.SearchResponse;
 import pl.pw.edu.po.search_engine.simplesearchengine.dto.SearchResult;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.analysis.TextPreprocessor;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.ActiveIndex;
 import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.InvertedIndex;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.PostingsList;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.core.TermDictionary;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.BM25Similarity;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.FieldBoosts;
+import pl.pw.edu.po.search_engine.simplesearchengine.engine.search.Similarity;
 import pl.pw.edu.po.search_engine.simplesearchengine.model.Document;
 import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentRepository;
+import pl.pw.edu.po.search_engine.simplesearchengine.repository.DocumentSummary;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -30,8 +39,7 @@ class SearchServiceTest {
     @Mock
     private IndexingService indexingService;
 
-    @Mock
-    private TfIdfScoringService tfIdfScoringService;
+    private final Similarity similarity = new BM25Similarity();
 
     @Mock
     private InvertedIndex invertedIndex;
@@ -44,11 +52,16 @@ class SearchServiceTest {
 
         // Mock IndexingService to return InvertedIndex
         when(indexingService.getInvertedIndex()).thenReturn(invertedIndex);
+        when(indexingService.acquireSearcher()).thenAnswer(invocation -> new ActiveIndex(invertedIndex).acquire());
 
         // Mock InvertedIndex to return empty results by default
         when(invertedIndex.getDocumentsForTerm(anyString())).thenReturn(new HashMap<>());
+        when(invertedIndex.getPostings(anyString())).thenReturn(PostingsList.EMPTY);
+        when(invertedIndex.getTermId(anyString())).thenReturn(TermDictionary.NOT_FOUND);
+        when(invertedIndex.snapshot()).thenReturn(new InvertedIndex().snapshot());
 
-        searchService = new SearchService(indexingService, tfIdfScoringService, documentRepository);
+        searchService = new SearchService(indexingService, similarity, new FieldBoosts(2.0, 1.0, 0.5), documentRepository,
+                new QueryResultCache(1 << 20), new TextPreprocessor());
     }
 
     @Test
@@ -220,6 +233,98 @@ class SearchServiceTest {
         assertNotNull(response);
         assertNotNull(response.getResults());
     }
-}
 
+    @Test
+    void testOnlyReturnedPageIsLoadedFromDatabase() {
+        // Given - five indexed documents, term frequency (and so the score) grows with the document ID
+        InvertedIndex index = new InvertedIndex();
+        for (int id = 1; id <= 5; id++) {
+            List<String> tokens = new ArrayList<>(Collections.nCopies(id, "java"));
+            tokens.add("content");
+            index.addDocument(id, "Title " + id, "java content " + id, tokens);
+        }
+        // Unrelated document keeps the idf positive
+        index.addDocument(6, "Other", "other", List.of("other"));
+        when(invertedIndex.snapshot()).thenReturn(index.snapshot());
+        List<DocumentSummary> page = List.of(summary(5L), summary(4L));
+        when(documentRepository.findSummariesByIdIn(anyCollection())).thenReturn(page);
+
+        SearchRequest request = SearchRequest.builder()
+                .query("java")
+                .limit(2)
+                .offset(0)
+                .build();
+
+        // When
+        SearchResponse response = searchService.search(request);
+
+        // Then
+        assertEquals(5L, response.getTotalResults());
+        List<Long> ids = response.getResults().stream().map(result -> result.getDocument().getId()).toList();
+        assertEquals(List.of(5L, 4L), ids);
+        assertEquals("java content 5", response.getResults().get(0).getDocument().getContent());
+        verify(documentRepository).findSummariesByIdIn(List.of(5L, 4L));
+        verify(documentRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void testOrQueryMatchesDocumentsWithAnyKnownTerm() {
+        // Given
+        InvertedIndex index = new InvertedIndex();
+        index.addDocument(1, "Java", "java", List.of("java"));
+        index.addDocument(2, "Python", "python", List.of("python"));
+        index.addDocument(3, "Other", "other", List.of("other"));
+        when(invertedIndex.snapshot()).thenReturn(index.snapshot());
+        List<DocumentSummary> page = List.of(summary(1L), summary(2L));
+        when(documentRepository.findSummariesByIdIn(anyCollection())).thenReturn(page);
 
+        SearchRequest request = SearchRequest.builder()
+                .query("java python unknownterm")
+                .operator(SearchRequest.Operator.OR)
+                .build();
+
+        // When
+        SearchResponse response = searchService.search(request);
+
+        // Then
+        assertEquals(2L, response.getTotalResults());
+        assertTrue(response.getTotalResultsExact());
+        assertEquals(2, response.getResults().size());
+    }
+
+    @Test
+    void testRepeatedQueryIsServedFromCacheUntilGenerationChanges() {
+        // Given
+        InvertedIndex index = new InvertedIndex();
+        index.addDocument(1, "Java", "java", List.of("java"));
+        index.addDocument(2, "Other", "other", List.of("other"));
+        when(invertedIndex.snapshot()).thenReturn(index.snapshot());
+        List<DocumentSummary> page = List.of(summary(1L));
+        when(documentRepository.findSummariesByIdIn(anyCollection())).thenReturn(page);
+        SearchRequest request = SearchRequest.builder().query("Java").build();
+        SearchRequest sameTokens = SearchRequest.builder().query("  java ").build();
+
+        searchService.search(request);
+        // Index changes without a generation bump are not visible to cached queries
+        InvertedIndex changed = new InvertedIndex();
+        changed.addDocument(3, "Java", "java", List.of("java"));
+        changed.addDocument(4, "Other", "other", List.of("other"));
+        when(invertedIndex.snapshot()).thenReturn(changed.snapshot());
+
+        // When & Then - same analyzed query, same generation: ranking comes from the cache
+        assertEquals(1L, searchService.search(sameTokens).getTotalResults());
+        verify(documentRepository, times(2)).findSummariesByIdIn(List.of(1L));
+
+        when(indexingService.getGeneration()).thenReturn(1L);
+        searchService.search(request);
+        verify(documentRepository).findSummariesByIdIn(List.of(3L));
+    }
+
+    private DocumentSummary summary(long id) {
+        DocumentSummary summary = mock(DocumentSummary.class);
+        when(summary.getId()).thenReturn(id);
+        when(summary.getTitle()).thenReturn("Title " + id);
+        when(summary.getUrl()).thenReturn("https://test.com/" + id);
+        return summary;
+    }
+}